@@ -0,0 +1,134 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.benchmark;
+
+import com.github.molguin92.minisync.algorithm.HullMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.algorithm.TinySyncAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link TimeSyncAlgorithm#addDataPoint(double, double, double)}.
+ * <p>
+ * {@link #addDataPoint()} measures the cost of a single call (throughput and latency percentiles), averaged over
+ * streams of {@link #samples} samples: once a stream is exhausted the algorithm is replaced by a fresh instance and the
+ * stream starts over. {@link #ingestStream()} measures the cost of feeding a complete stream to a fresh instance.
+ * <p>
+ * Allocation rates are reported when running with the GC profiler ({@code -prof gc}), which the {@code jmh} Gradle
+ * task enables by default.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AddDataPointBenchmark {
+
+    private static final long SEED = 0x5EEDL;
+
+    public enum Algorithm {
+        TINYSYNC {
+            @Override
+            TimeSyncAlgorithm create() {
+                return new TinySyncAlgorithm();
+            }
+        },
+        MINISYNC {
+            @Override
+            TimeSyncAlgorithm create() {
+                return new MiniSyncAlgorithm();
+            }
+        },
+        HULL_MINISYNC {
+            @Override
+            TimeSyncAlgorithm create() {
+                return new HullMiniSyncAlgorithm();
+            }
+        },
+        PRIMITIVE_MINISYNC {
+            @Override
+            TimeSyncAlgorithm create() {
+                return new PrimitiveMiniSyncAlgorithm();
+            }
+        };
+
+        abstract TimeSyncAlgorithm create();
+    }
+
+    @Param({"TINYSYNC", "MINISYNC", "HULL_MINISYNC", "PRIMITIVE_MINISYNC"})
+    public Algorithm algorithm;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int samples;
+
+    @Param({"STABLE", "DRIFTING", "JITTERY"})
+    public SyntheticStream.Profile profile;
+
+    private SyntheticStream stream;
+    private TimeSyncAlgorithm algo;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.stream = SyntheticStream.generate(this.profile, this.samples, SEED);
+        this.algo = this.algorithm.create();
+        this.next = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double addDataPoint() throws TimeSyncAlgorithmException {
+        if (this.next == this.samples) {
+            // stream exhausted, start over on a fresh instance
+            this.algo = this.algorithm.create();
+            this.next = 0;
+        }
+
+        this.algo.addDataPoint(this.stream.To[this.next], this.stream.Tb[this.next], this.stream.Tr[this.next]);
+        ++this.next;
+        return this.algo.getDrift();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double ingestStream() throws TimeSyncAlgorithmException {
+        TimeSyncAlgorithm algo = this.algorithm.create();
+        for (int i = 0; i < this.samples; ++i)
+            algo.addDataPoint(this.stream.To[i], this.stream.Tb[i], this.stream.Tr[i]);
+        return algo.getDrift();
+    }
+}
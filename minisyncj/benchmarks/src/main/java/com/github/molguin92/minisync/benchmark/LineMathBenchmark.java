@@ -0,0 +1,101 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.benchmark;
+
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.constraint.LineMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the line arithmetic of {@link LineMath}: single translations and the batch translations of
+ * {@link SyncEstimate}.
+ * <p>
+ * These were used to compare the implementation with one based on {@code Math.fma} on Java 9+: on a CPU with fused
+ * multiply-add instructions, both were equally fast (about 8 ns per translation and 120 ns per batch of 1000), while
+ * with {@code -XX:-UseFMA} the {@code Math.fma} version took about 5 us per translation.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class LineMathBenchmark {
+
+    private static final long SEED = 0x5EEDL;
+
+    @Param({"1000"})
+    public int size;
+
+    private SyncEstimate estimate;
+    private double[] remote;
+    private double[] local;
+    private double[] max;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random r = new Random(SEED);
+        this.estimate = new SyncEstimate(1.0d + 20e-6d, 1e-7d, 500000.0d, 50.0d, 100, 0.0d);
+        this.remote = new double[this.size];
+        this.local = new double[this.size];
+        this.max = new double[this.size];
+        for (int i = 0; i < this.size; ++i)
+            this.remote[i] = r.nextDouble() * 1e9d;
+        this.next = 0;
+    }
+
+    @Benchmark
+    public double evaluate() {
+        this.next = (this.next + 1) % this.size;
+        return LineMath.evaluate(this.estimate.drift, this.remote[this.next], this.estimate.offset);
+    }
+
+    @Benchmark
+    public double intercept() {
+        this.next = (this.next + 1) % this.size;
+        return LineMath.intercept(this.estimate.drift, this.remote[this.next], this.local[this.next]);
+    }
+
+    @Benchmark
+    public double[] toLocalBatch() {
+        this.estimate.toLocal(this.remote, this.local);
+        return this.local;
+    }
+
+    @Benchmark
+    public double[] toLocalBoundsBatch() {
+        this.estimate.toLocalBounds(this.remote, this.local, this.max);
+        return this.max;
+    }
+}
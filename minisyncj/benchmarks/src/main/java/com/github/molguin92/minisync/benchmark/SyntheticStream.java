@@ -0,0 +1,119 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic (To, Tb, Tr) sample streams used to drive the benchmarks.
+ * <p>
+ * The local clock is modeled as {@code local = drift * remote + offset}, with all timestamps in microseconds. Each
+ * sample is a probe sent at local time To, timestamped by the remote peer at Tb after a one-way delay and received
+ * back locally at Tr after a second one-way delay. Streams are generated from a fixed seed so that runs are
+ * reproducible.
+ */
+public final class SyntheticStream {
+
+    private static final double PROBE_INTERVAL = 100000.0d; // microseconds, local clock
+    private static final double INITIAL_OFFSET = 500000.0d;
+    private static final double INITIAL_DRIFT = 1.0d + 20e-6d; // 20 ppm
+
+    /**
+     * Drift and jitter profiles for the generated streams.
+     */
+    public enum Profile {
+        /**
+         * Constant drift, small uniformly distributed delays.
+         */
+        STABLE(0.0d, 100.0d, 50.0d, 0.0d),
+        /**
+         * Drift performs a small random walk (e.g. temperature changes), small uniformly distributed delays.
+         */
+        DRIFTING(1e-9d, 100.0d, 50.0d, 0.0d),
+        /**
+         * Constant drift, delays with a heavy exponential tail (e.g. congested links).
+         */
+        JITTERY(0.0d, 100.0d, 50.0d, 2000.0d);
+
+        final double drift_wander;
+        final double min_delay;
+        final double uniform_jitter;
+        final double exponential_jitter;
+
+        Profile(double drift_wander, double min_delay, double uniform_jitter, double exponential_jitter) {
+            this.drift_wander = drift_wander;
+            this.min_delay = min_delay;
+            this.uniform_jitter = uniform_jitter;
+            this.exponential_jitter = exponential_jitter;
+        }
+
+        private double delay(Random r) {
+            double d = this.min_delay + r.nextDouble() * this.uniform_jitter;
+            if (this.exponential_jitter > 0)
+                d += -Math.log(1.0d - r.nextDouble()) * this.exponential_jitter;
+            return d;
+        }
+    }
+
+    public final double[] To;
+    public final double[] Tb;
+    public final double[] Tr;
+
+    private SyntheticStream(int length) {
+        this.To = new double[length];
+        this.Tb = new double[length];
+        this.Tr = new double[length];
+    }
+
+    public int length() {
+        return this.To.length;
+    }
+
+    /**
+     * Generates a new synthetic stream.
+     *
+     * @param profile Drift and jitter profile.
+     * @param length  Number of samples in the stream.
+     * @param seed    Seed for the random number generator.
+     * @return The generated stream.
+     */
+    public static SyntheticStream generate(Profile profile, int length, long seed) {
+        SyntheticStream stream = new SyntheticStream(length);
+        Random r = new Random(seed);
+
+        double drift = INITIAL_DRIFT;
+        double offset = INITIAL_OFFSET;
+        double local = 0.0d;
+        for (int i = 0; i < length; ++i) {
+            // keep the local clock continuous when the drift changes
+            double remote = (local - offset) / drift;
+            drift += profile.drift_wander * r.nextGaussian();
+            offset = local - drift * remote;
+
+            double Tb = (local - offset) / drift + profile.delay(r);
+            stream.To[i] = local;
+            stream.Tb[i] = Tb;
+            stream.Tr[i] = drift * (Tb + profile.delay(r)) + offset;
+
+            local += PROBE_INTERVAL;
+        }
+        return stream;
+    }
+}
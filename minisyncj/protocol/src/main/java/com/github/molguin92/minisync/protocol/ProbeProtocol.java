@@ -0,0 +1,89 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+
+/**
+ * Wire format of the probe exchange between a {@link SyncClient} and a {@link SyncResponder}.
+ * <p>
+ * All fields are big-endian. A probe request is {@value #REQUEST_SIZE} bytes long:
+ * <pre>
+ *     0       2       3       4               8                              16
+ *     | magic | ver.  | type  |   sequence    |          To (client)          |
+ * </pre>
+ * and a reply echoes the request with the type set to {@link #TYPE_REPLY}, followed by the responder timestamp Tb,
+ * for a total of {@value #REPLY_SIZE} bytes. Timestamps are in nanoseconds, on the clock of the respective host.
+ * Datagrams of the wrong size, magic, version or type are ignored.
+ */
+public final class ProbeProtocol {
+
+    public static final short MAGIC = 0x4D53; // "MS"
+    public static final byte VERSION = 1;
+    public static final byte TYPE_REQUEST = 0;
+    public static final byte TYPE_REPLY = 1;
+
+    public static final int REQUEST_SIZE = 16;
+    public static final int REPLY_SIZE = 24;
+
+    static final int SEQUENCE_OFFSET = 4;
+    static final int TO_OFFSET = 8;
+    static final int TB_OFFSET = 16;
+
+    /**
+     * Default clock for both ends, {@link System#nanoTime()}.
+     */
+    public static final LongSupplier NANO_TIME = new LongSupplier() {
+        @Override
+        public long getAsLong() {
+            return System.nanoTime();
+        }
+    };
+
+    private ProbeProtocol() {
+    }
+
+    /**
+     * Checks the header of the datagram in the buffer, between position 0 and its limit.
+     */
+    static boolean isValid(ByteBuffer buffer, byte type) {
+        int size = type == TYPE_REQUEST ? REQUEST_SIZE : REPLY_SIZE;
+        return buffer.limit() == size &&
+                buffer.getShort(0) == MAGIC &&
+                buffer.get(2) == VERSION &&
+                buffer.get(3) == type;
+    }
+
+    static void putRequest(ByteBuffer buffer, int sequence, long To) {
+        buffer.clear();
+        buffer.putShort(MAGIC).put(VERSION).put(TYPE_REQUEST).putInt(sequence).putLong(To);
+        buffer.flip();
+    }
+
+    /**
+     * Turns the request in the buffer into a reply in place.
+     */
+    static void toReply(ByteBuffer buffer, long Tb) {
+        buffer.limit(REPLY_SIZE);
+        buffer.put(3, TYPE_REPLY);
+        buffer.putLong(TB_OFFSET, Tb);
+        buffer.position(0);
+    }
+}
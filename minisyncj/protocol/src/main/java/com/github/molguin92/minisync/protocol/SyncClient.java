@@ -0,0 +1,136 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.protocol;
+
+import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Probes a {@link SyncResponder} (see {@link ProbeProtocol}) and feeds the resulting (To, Tb, Tr) data points to a
+ * {@link TimeSyncAlgorithm}.
+ * <p>
+ * Timestamps are passed to the algorithm in microseconds, so its estimates relate the local and remote clocks in
+ * microseconds. Probes are sent one at a time over a connected, non-blocking {@link DatagramChannel} using reusable
+ * direct buffers; replies to earlier probes which timed out are recognized by their sequence number and discarded.
+ * This class is not thread-safe.
+ */
+public class SyncClient implements Closeable {
+
+    private final TimeSyncAlgorithm algorithm;
+    private final LongSupplier clock;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ByteBuffer request;
+    private final ByteBuffer reply;
+    private int sequence;
+
+    /**
+     * Creates a client which feeds a {@link MiniSyncAlgorithm} and uses {@link System#nanoTime()} as clock.
+     *
+     * @param server Address of the responder.
+     */
+    public SyncClient(InetSocketAddress server) throws IOException {
+        this(server, new MiniSyncAlgorithm(), ProbeProtocol.NANO_TIME);
+    }
+
+    /**
+     * @param server    Address of the responder.
+     * @param algorithm Algorithm to feed the data points to.
+     * @param clock     Clock returning the local time in nanoseconds.
+     */
+    public SyncClient(InetSocketAddress server, TimeSyncAlgorithm algorithm, LongSupplier clock) throws IOException {
+        this.algorithm = algorithm;
+        this.clock = clock;
+        this.request = ByteBuffer.allocateDirect(ProbeProtocol.REQUEST_SIZE);
+        this.reply = ByteBuffer.allocateDirect(ProbeProtocol.REPLY_SIZE);
+        this.selector = Selector.open();
+        this.channel = DatagramChannel.open();
+        try {
+            this.channel.connect(server);
+            this.channel.configureBlocking(false);
+            this.channel.register(this.selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            this.channel.close();
+            this.selector.close();
+            throw e;
+        }
+        this.sequence = 0;
+    }
+
+    /**
+     * Sends a probe and waits for the reply. If a reply is received in time, the data point is added to the algorithm.
+     *
+     * @param timeout Maximum time to wait for the reply, in milliseconds.
+     * @return true if a reply was received, false if the probe timed out.
+     * @throws IOException If the probe cannot be sent, for instance because nothing listens on the server port.
+     */
+    public boolean probe(long timeout) throws IOException, TimeSyncAlgorithmException {
+        int sequence = ++this.sequence;
+        long To = this.clock.getAsLong();
+        ProbeProtocol.putRequest(this.request, sequence, To);
+        this.channel.write(this.request);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            ByteBuffer reply = this.reply;
+            reply.clear();
+            if (this.channel.read(reply) > 0) {
+                long Tr = this.clock.getAsLong();
+                reply.flip();
+                if (ProbeProtocol.isValid(reply, ProbeProtocol.TYPE_REPLY) &&
+                        reply.getInt(ProbeProtocol.SEQUENCE_OFFSET) == sequence &&
+                        reply.getLong(ProbeProtocol.TO_OFFSET) == To) {
+                    long Tb = reply.getLong(ProbeProtocol.TB_OFFSET);
+                    this.algorithm.addDataPoint(To / 1000.0d, Tb / 1000.0d, Tr / 1000.0d);
+                    return true;
+                }
+                continue; // stale or invalid reply
+            }
+
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) return false;
+            this.selector.select(remaining);
+            this.selector.selectedKeys().clear();
+        }
+    }
+
+    /**
+     * @return The algorithm the data points are fed to.
+     */
+    public TimeSyncAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.selector.close();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,140 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers probe requests (see {@link ProbeProtocol}) with the local timestamp Tb.
+ * <p>
+ * The responder runs a selector loop on a single non-blocking {@link DatagramChannel} and reuses one direct buffer for
+ * all datagrams, so no buffer is allocated per probe. {@link DatagramChannel#receive(ByteBuffer)} still returns a new
+ * {@link SocketAddress} for every datagram. Whenever the channel becomes readable, all queued requests are drained
+ * before selecting again. Tb is taken as soon as a request has been received; replies that cannot be sent immediately
+ * are dropped, as the client simply treats them as lost.
+ * <p>
+ * {@link #run()} blocks until the responder is closed, so it is usually run on a dedicated thread.
+ */
+public class SyncResponder implements Runnable, Closeable {
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ByteBuffer buffer;
+    private final LongSupplier clock;
+    private volatile boolean closed;
+    private long answered;
+
+    /**
+     * Creates a responder using {@link System#nanoTime()} as clock.
+     *
+     * @param address Address to bind to; use port 0 for an ephemeral port.
+     */
+    public SyncResponder(InetSocketAddress address) throws IOException {
+        this(address, ProbeProtocol.NANO_TIME);
+    }
+
+    /**
+     * @param address Address to bind to; use port 0 for an ephemeral port.
+     * @param clock   Clock returning the local time in nanoseconds.
+     */
+    public SyncResponder(InetSocketAddress address, LongSupplier clock) throws IOException {
+        this.clock = clock;
+        this.buffer = ByteBuffer.allocateDirect(ProbeProtocol.REPLY_SIZE);
+        this.selector = Selector.open();
+        this.channel = DatagramChannel.open();
+        try {
+            this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            this.channel.bind(address);
+            this.channel.configureBlocking(false);
+            this.channel.register(this.selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            this.channel.close();
+            this.selector.close();
+            throw e;
+        }
+        this.closed = false;
+        this.answered = 0;
+    }
+
+    /**
+     * @return The address the responder is bound to.
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) this.channel.getLocalAddress();
+    }
+
+    /**
+     * @return Number of probes answered so far. Only accurate when read from the thread running the responder or
+     * after it stopped.
+     */
+    public long getAnswered() {
+        return this.answered;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!this.closed) {
+                this.selector.select();
+                this.selector.selectedKeys().clear();
+                this.drain();
+            }
+        } catch (ClosedSelectorException e) {
+            // closed while selecting
+        } catch (IOException e) {
+            if (!this.closed) throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Answers all requests currently queued on the channel.
+     */
+    private void drain() throws IOException {
+        ByteBuffer buffer = this.buffer;
+        while (true) {
+            buffer.clear();
+            SocketAddress client = this.channel.receive(buffer);
+            if (client == null) return;
+
+            long Tb = this.clock.getAsLong();
+            buffer.flip();
+            if (!ProbeProtocol.isValid(buffer, ProbeProtocol.TYPE_REQUEST)) continue;
+
+            ProbeProtocol.toReply(buffer, Tb);
+            if (this.channel.send(buffer, client) > 0) ++this.answered;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.selector.close();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,97 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.protocol.ProbeProtocol;
+import com.github.molguin92.minisync.protocol.SyncClient;
+import com.github.molguin92.minisync.protocol.SyncResponder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtocolTest {
+
+    private static final int NUM_PROBES = 200;
+    private static final long TIMEOUT = 1000;
+    private static final long REMOTE_OFFSET = 5_000_000_000L; // nanoseconds
+
+    @Test
+    void loopback() throws IOException, TimeSyncAlgorithmException, InterruptedException {
+        // the remote clock is 5 s ahead of the local one
+        SyncResponder responder = new SyncResponder(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                () -> System.nanoTime() + REMOTE_OFFSET);
+        Thread thread = new Thread(responder);
+        thread.start();
+
+        try {
+            try (SyncClient client = new SyncClient(responder.getLocalAddress())) {
+                int replies = 0;
+                for (int i = 0; i < NUM_PROBES; ++i)
+                    if (client.probe(TIMEOUT)) ++replies;
+
+                assertTrue(replies > NUM_PROBES / 2);
+                assertEquals(replies, client.getAlgorithm().numDataPoints());
+
+                // local = remote - 5 s, in microseconds
+                SyncEstimate estimate = client.getAlgorithm().getEstimate();
+                double remote = (System.nanoTime() + REMOTE_OFFSET) / 1000.0d;
+                assertEquals(1.0, estimate.drift, 0.01);
+                assertEquals(remote - REMOTE_OFFSET / 1000.0d, estimate.toLocal(remote).value, 10000);
+            }
+        } finally {
+            responder.close();
+        }
+
+        thread.join(TIMEOUT);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void invalidDatagrams() throws IOException, TimeSyncAlgorithmException, InterruptedException {
+        SyncResponder responder = new SyncResponder(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread thread = new Thread(responder);
+        thread.start();
+
+        try {
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.connect(responder.getLocalAddress());
+                channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+                channel.write(ByteBuffer.allocate(ProbeProtocol.REQUEST_SIZE)); // wrong magic
+            }
+
+            // the responder keeps answering valid probes
+            try (SyncClient client = new SyncClient(responder.getLocalAddress())) {
+                assertTrue(client.probe(TIMEOUT));
+            }
+        } finally {
+            responder.close();
+        }
+
+        // only accurate once the responder thread has terminated
+        thread.join(TIMEOUT);
+        assertEquals(1, responder.getAnswered());
+    }
+}
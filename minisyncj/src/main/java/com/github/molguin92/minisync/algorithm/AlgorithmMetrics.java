@@ -0,0 +1,286 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Counters and latency histogram of a single algorithm instance, enabled through
+ * {@link TimeSyncAlgorithm#setMetrics(AlgorithmMetrics)}.
+ * <p>
+ * Algorithms without metrics only pay for a null check per data point. With metrics enabled, recording is
+ * allocation-free: counters are plain fields, and latencies of {@link TimeSyncAlgorithm#addDataPoint(double, double,
+ * double)} are counted in a fixed histogram with power-of-two nanosecond buckets, so percentiles are accurate to a
+ * factor of 2. Metrics are written by the thread adding data points without synchronization; reads from other threads
+ * (for instance through JMX, see {@link AlgorithmMetricsMXBean}) may thus be slightly out of date.
+ * <p>
+ * Retained point and constraint counts are those after the latest update, and make it possible to spot instances whose
+ * state keeps growing. Algorithms which do not store constraints report them as -1.
+ */
+public class AlgorithmMetrics implements AlgorithmMetricsMXBean {
+
+    private static final int LATENCY_BUCKETS = 64;
+
+    private long datapoints;
+    private long rejected_datapoints;
+    private long exceptions;
+    private long updates;
+    private long diff_factor_improvements;
+    private long pruned_points;
+    private int last_pruned_points;
+    private long evicted_points;
+    private double max_eviction_loosening;
+
+    private int low_points;
+    private int high_points;
+    private int low_constraints;
+    private int high_constraints;
+
+    // bucket i counts latencies in [2^(i-1), 2^i) nanoseconds
+    private final long[] latencies;
+    private long latency_count;
+    private long max_latency;
+
+    public AlgorithmMetrics() {
+        this.latencies = new long[LATENCY_BUCKETS];
+        this.reset();
+    }
+
+    void accepted() {
+        ++this.datapoints;
+    }
+
+    void rejected() {
+        ++this.rejected_datapoints;
+    }
+
+    void exception() {
+        ++this.exceptions;
+    }
+
+    void latency(long nanos) {
+        ++this.latencies[Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)))];
+        ++this.latency_count;
+        if (nanos > this.max_latency) this.max_latency = nanos;
+    }
+
+    /**
+     * Records the eviction of a point because of a retained-point cap.
+     *
+     * @param loosening How much the bound at the x of the point loosened.
+     */
+    void evicted(double loosening) {
+        ++this.evicted_points;
+        if (loosening > this.max_eviction_loosening) this.max_eviction_loosening = loosening;
+    }
+
+    /**
+     * Records the state after an update of the constraints.
+     *
+     * @param pruned   Number of points discarded by the update.
+     * @param improved Whether the update improved diff_factor.
+     */
+    void update(int low_points, int high_points, int low_constraints, int high_constraints,
+                int pruned, boolean improved) {
+        ++this.updates;
+        if (improved) ++this.diff_factor_improvements;
+        this.pruned_points += pruned;
+        this.last_pruned_points = pruned;
+        this.low_points = low_points;
+        this.high_points = high_points;
+        this.low_constraints = low_constraints;
+        this.high_constraints = high_constraints;
+    }
+
+    /**
+     * @return Number of data points accepted by the filters and added to the algorithm.
+     */
+    @Override
+    public long getDataPoints() {
+        return this.datapoints;
+    }
+
+    /**
+     * @return Number of data points discarded by the filters.
+     */
+    @Override
+    public long getRejectedDataPoints() {
+        return this.rejected_datapoints;
+    }
+
+    /**
+     * @return Number of {@link TimeSyncAlgorithmException}s thrown while adding data points.
+     */
+    @Override
+    public long getExceptions() {
+        return this.exceptions;
+    }
+
+    /**
+     * @return Number of times the constraints were updated.
+     */
+    @Override
+    public long getUpdates() {
+        return this.updates;
+    }
+
+    /**
+     * @return Number of updates which found a tighter pair of constraints.
+     */
+    @Override
+    public long getDiffFactorImprovements() {
+        return this.diff_factor_improvements;
+    }
+
+    /**
+     * @return Total number of points discarded by all updates.
+     */
+    @Override
+    public long getPrunedPoints() {
+        return this.pruned_points;
+    }
+
+    /**
+     * @return Number of points discarded by the latest update.
+     */
+    @Override
+    public int getLastPrunedPoints() {
+        return this.last_pruned_points;
+    }
+
+    /**
+     * @return Number of points evicted because of a retained-point cap, see
+     * {@link MiniSyncAlgorithm#setMaxRetainedPoints(int)}. These are also counted as pruned.
+     */
+    @Override
+    public long getEvictedPoints() {
+        return this.evicted_points;
+    }
+
+    /**
+     * @return Largest vertical distance between an evicted point and the bound which replaced it, i.e. by how much
+     * evictions loosened the bounds at most.
+     */
+    @Override
+    public double getMaxEvictionLoosening() {
+        return this.max_eviction_loosening;
+    }
+
+    @Override
+    public int getLowPoints() {
+        return this.low_points;
+    }
+
+    @Override
+    public int getHighPoints() {
+        return this.high_points;
+    }
+
+    @Override
+    public int getLowConstraints() {
+        return this.low_constraints;
+    }
+
+    @Override
+    public int getHighConstraints() {
+        return this.high_constraints;
+    }
+
+    /**
+     * @return Number of latencies recorded.
+     */
+    @Override
+    public long getLatencyCount() {
+        return this.latency_count;
+    }
+
+    /**
+     * @return Maximum recorded latency, in nanoseconds.
+     */
+    @Override
+    public long getMaxLatency() {
+        return this.max_latency;
+    }
+
+    @Override
+    public long getMedianLatency() {
+        return this.getLatencyPercentile(0.5);
+    }
+
+    @Override
+    public long get99thPercentileLatency() {
+        return this.getLatencyPercentile(0.99);
+    }
+
+    /**
+     * @param percentile Percentile in [0, 1].
+     * @return Upper bound of the histogram bucket containing the given percentile of the recorded latencies, in
+     * nanoseconds, or 0 if none were recorded.
+     */
+    public long getLatencyPercentile(double percentile) {
+        long rank = (long) Math.ceil(percentile * this.latency_count);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; ++i) {
+            seen += this.latencies[i];
+            if (seen >= rank && seen > 0) return Math.min(1L << i, this.max_latency);
+        }
+        return 0;
+    }
+
+    /**
+     * @return A copy of the latency histogram; element i counts the latencies in [2^(i-1), 2^i) nanoseconds.
+     */
+    public long[] getLatencyHistogram() {
+        return this.latencies.clone();
+    }
+
+    /**
+     * Resets all counters and the latency histogram.
+     */
+    @Override
+    public void reset() {
+        this.datapoints = 0;
+        this.rejected_datapoints = 0;
+        this.exceptions = 0;
+        this.updates = 0;
+        this.diff_factor_improvements = 0;
+        this.pruned_points = 0;
+        this.last_pruned_points = 0;
+        this.evicted_points = 0;
+        this.max_eviction_loosening = 0;
+        this.low_points = 0;
+        this.high_points = 0;
+        this.low_constraints = 0;
+        this.high_constraints = 0;
+        Arrays.fill(this.latencies, 0);
+        this.latency_count = 0;
+        this.max_latency = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AlgorithmMetrics{dataPoints=" + this.datapoints + ", rejected=" + this.rejected_datapoints +
+                ", exceptions=" + this.exceptions + ", updates=" + this.updates +
+                ", improvements=" + this.diff_factor_improvements + ", pruned=" + this.pruned_points +
+                ", evicted=" + this.evicted_points +
+                ", points=" + this.low_points + '/' + this.high_points +
+                ", constraints=" + this.low_constraints + '/' + this.high_constraints +
+                ", medianLatency=" + this.getMedianLatency() + "ns}";
+    }
+}
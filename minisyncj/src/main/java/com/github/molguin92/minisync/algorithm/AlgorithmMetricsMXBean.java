@@ -0,0 +1,62 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.algorithm;
+
+/**
+ * Management interface of {@link AlgorithmMetrics}, so that instances can be registered with a JMX MBean server as
+ * they are.
+ */
+public interface AlgorithmMetricsMXBean {
+
+    long getDataPoints();
+
+    long getRejectedDataPoints();
+
+    long getExceptions();
+
+    long getUpdates();
+
+    long getDiffFactorImprovements();
+
+    long getPrunedPoints();
+
+    int getLastPrunedPoints();
+
+    long getEvictedPoints();
+
+    double getMaxEvictionLoosening();
+
+    int getLowPoints();
+
+    int getHighPoints();
+
+    int getLowConstraints();
+
+    int getHighConstraints();
+
+    long getLatencyCount();
+
+    long getMaxLatency();
+
+    long getMedianLatency();
+
+    long get99thPercentileLatency();
+
+    void reset();
+}
@@ -22,85 +22,515 @@ package com.github.molguin92.minisync.algorithm;
 import com.github.molguin92.minisync.constraint.HighPoint;
 import com.github.molguin92.minisync.constraint.Line;
 import com.github.molguin92.minisync.constraint.LowPoint;
+import com.github.molguin92.minisync.filter.SampleFilter;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
 
 abstract class BaseAlgorithm implements TimeSyncAlgorithm {
 
+    /**
+     * Default number of constraint pairs above which they are compared in parallel.
+     */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 1L << 18;
+    private static final long PARALLEL_LEAF_PAIRS = 1L << 14; // pairs compared sequentially by each subtask
+
     protected final Set<Line> low_constraints;
     protected final Set<Line> high_constraints;
     protected final TreeSet<HighPoint> high_points;
     protected final TreeSet<LowPoint> low_points;
 
+    // constraints added since the last call to updateConstraints()
+    private final List<Line> new_low_constraints;
+    private final List<Line> new_high_constraints;
+
     protected Line current_high;
     protected Line current_low;
 
-    private Value offset;
-    private Value drift;
+    private final EstimateReference estimate;
 
     private double diff_factor;
+    private boolean full_scan; // the current constraints expired, compare all pairs of constraints again
+    private boolean incremental; // see setIncrementalSelection(boolean)
+    private boolean current_tightest; // see selectTightest(Collection, Collection)
     private int processed_datapoints;
     private double minimum_local_delay; // (for instance, one way through the network stack)
     private double minimum_remote_delay;
 
+    private double time_window;
+    private double[] sample_window; // Tb of the most recent data points
+    private int sample_window_count;
+
+    private final List<SampleFilter> filters;
+    private AlgorithmMetrics metrics; // null unless enabled
+    private long parallel_threshold;
+
+    // data points added since the last update, with lazy updates
+    private int max_pending; // 0 to process every data point as soon as it is added
+    private double[] pending_To;
+    private double[] pending_Tb;
+    private double[] pending_Tr;
+    private int pending_count;
+    private volatile boolean dirty; // pending data points need to be processed before the estimates are read
+
     protected BaseAlgorithm() {
         this.low_constraints = new HashSet<>();
         this.high_constraints = new HashSet<>();
         this.low_points = new TreeSet<>();
         this.high_points = new TreeSet<>();
+        this.new_low_constraints = new ArrayList<>();
+        this.new_high_constraints = new ArrayList<>();
 
-        this.offset = new Value();
-        this.drift = new Value(1.0, 0.0);
+        this.estimate = new EstimateReference(SyncEstimate.INITIAL);
 
         this.diff_factor = Double.MAX_VALUE;
+        this.full_scan = false;
+        this.incremental = true;
+        this.current_tightest = false;
         this.processed_datapoints = 0;
         this.minimum_local_delay = 0.0d;
         this.minimum_remote_delay = 0.0d;
+
+        this.time_window = Double.POSITIVE_INFINITY;
+        this.sample_window = null;
+        this.sample_window_count = 0;
+
+        this.filters = new ArrayList<>();
+        this.metrics = null;
+        this.parallel_threshold = DEFAULT_PARALLEL_THRESHOLD;
+
+        this.max_pending = 0;
+        this.pending_To = new double[0];
+        this.pending_Tb = new double[0];
+        this.pending_Tr = new double[0];
+        this.pending_count = 0;
+        this.dirty = false;
     }
 
     @Override
     public void addDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        AlgorithmMetrics metrics = this.metrics;
+        if (metrics == null) {
+            this.ingestDataPoint(To, Tb, Tr);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            this.ingestDataPoint(To, Tb, Tr);
+        } catch (TimeSyncAlgorithmException e) {
+            metrics.exception();
+            throw e;
+        } finally {
+            metrics.latency(System.nanoTime() - start);
+        }
+    }
+
+    private void ingestDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        if (this.max_pending > 0) {
+            this.deferDataPoint(To, Tb, Tr);
+            return;
+        }
+        if (this.pending_count > 0) this.processPending();
+
+        if (!this.acceptDataPoint(To, Tb, Tr, this.estimate.get())) return;
+        Tr = this.insertDataPoint(To, Tb, Tr);
+
+        if (this.processed_datapoints > 1) {
+            this.updateConstraints();
+            this.publishEstimates(this.processed_datapoints, Tr);
+        }
+    }
+
+    @Override
+    public void addDataPoints(double[] To, double[] Tb, double[] Tr, int offset, int length)
+            throws TimeSyncAlgorithmException {
+        if (offset < 0 || length < 0 || length > Math.min(To.length, Math.min(Tb.length, Tr.length)) - offset)
+            throw new IndexOutOfBoundsException(
+                    String.format("Range of %d data points at %d is out of bounds.", length, offset));
+
+        try {
+            if (this.pending_count > 0) this.processPending();
+            this.ingestDataPoints(To, Tb, Tr, offset, length);
+        } catch (TimeSyncAlgorithmException e) {
+            if (this.metrics != null) this.metrics.exception();
+            throw e;
+        }
+    }
+
+    private void ingestDataPoints(double[] To, double[] Tb, double[] Tr, int offset, int count)
+            throws TimeSyncAlgorithmException {
+
+        // Constraints are still updated after every data point: cleanup() depends on the current constraints and is
+        // what keeps the number of constraints bounded. Estimates are only computed and published once, with the
+        // same values as if the data points had been added one by one. Filters however have to see the estimates as
+        // they would have been published after every data point, so those are tracked whenever there are filters.
+        boolean filtered = !this.filters.isEmpty();
+        SyncEstimate estimate = this.estimate.get();
+        boolean updated = false;
+        int changed_at = 0;
+        double changed_Tr = 0;
+        for (int i = offset; i < offset + count; ++i) {
+            if (!this.acceptDataPoint(To[i], Tb[i], Tr[i], estimate)) continue;
+            double adjusted_Tr = this.insertDataPoint(To[i], Tb[i], Tr[i]);
+            if (this.processed_datapoints <= 1) continue;
+
+            updated = true;
+            if (this.updateConstraints()) {
+                changed_at = this.processed_datapoints;
+                changed_Tr = adjusted_Tr;
+                if (filtered) estimate = this.nextEstimate(estimate, changed_at, changed_Tr);
+            }
+
+            if (this.current_low != null && (this.current_low.A + this.current_high.A) / 2 < 0)
+                break; // publishEstimates() throws
+        }
+
+        if (!updated) return;
+        if (filtered) this.publishEstimate(estimate);
+        else this.publishEstimates(changed_at, changed_Tr);
+    }
+
+    /**
+     * Stores a data point until the estimates are read, see {@link #setLazyUpdates(int)}.
+     */
+    private void deferDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        int i = this.pending_count;
+        if (i == this.pending_To.length) {
+            int length = Math.max(i + 1, Math.min(Math.max(2 * i, 16), this.max_pending));
+            this.pending_To = Arrays.copyOf(this.pending_To, length);
+            this.pending_Tb = Arrays.copyOf(this.pending_Tb, length);
+            this.pending_Tr = Arrays.copyOf(this.pending_Tr, length);
+        }
+
+        this.pending_To[i] = To;
+        this.pending_Tb[i] = Tb;
+        this.pending_Tr[i] = Tr;
+        this.pending_count = i + 1;
+        if (!this.dirty) this.dirty = true;
+
+        if (this.pending_count >= this.max_pending) this.processPending();
+    }
+
+    /**
+     * Processes the deferred data points as a batch.
+     */
+    private void processPending() throws TimeSyncAlgorithmException {
+        int count = this.pending_count;
+        this.pending_count = 0;
+        this.dirty = false;
+        this.ingestDataPoints(this.pending_To, this.pending_Tb, this.pending_Tr, 0, count);
+    }
+
+    /**
+     * Processes the deferred data points, if any, before the estimates are read.
+     *
+     * @throws IllegalStateException Wrapping the {@link TimeSyncAlgorithmException} thrown while processing them.
+     */
+    private void flush() {
+        if (!this.dirty) return;
+        synchronized (this) {
+            if (!this.dirty) return;
+            try {
+                this.processPending();
+            } catch (TimeSyncAlgorithmException e) {
+                if (this.metrics != null) this.metrics.exception();
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Passes a data point through the filters.
+     *
+     * @param estimate The estimates derived from all previous data points.
+     * @return true if every filter accepted the data point.
+     */
+    private boolean acceptDataPoint(double To, double Tb, double Tr, SyncEstimate estimate) {
+        for (int i = 0; i < this.filters.size(); ++i) {
+            if (!this.filters.get(i).accept(To + this.minimum_local_delay,
+                    Tb - this.minimum_remote_delay,
+                    Tr - this.minimum_local_delay,
+                    estimate)) {
+                if (this.metrics != null) this.metrics.rejected();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adjusts the delays of a data point and adds its low and high points to the algorithm.
+     *
+     * @return The adjusted reply reception timestamp.
+     */
+    private double insertDataPoint(double To, double Tb, double Tr) {
         // adjust delays
         To += this.minimum_local_delay;
         Tb -= this.minimum_remote_delay;
         Tr -= this.minimum_local_delay;
 
+        this.slideWindow(Tb);
+
         // add points to algorithm
         this.addLowPoint(Tb, To);
         this.addHighPoint(Tb, Tr);
         ++this.processed_datapoints;
+        if (this.metrics != null) this.metrics.accepted();
+        return Tr;
+    }
 
-        if (this.processed_datapoints > 1)
-            this.recalculateEstimates();
+    /**
+     * Selects the best pair of constraints and cleans up the ones which are no longer needed.
+     * <p>
+     * In incremental mode, as long as the current constraints are the tightest ones (see
+     * {@link #selectTightest(Collection, Collection)}), the constraints created since the previous call are only
+     * compared against the current ones, which costs O(n) in the number n of retained points. This holds for
+     * consistent data with non-negative remote timestamps. Otherwise the new constraints are compared against the full
+     * set of opposite constraints, and it is checked again whether the selected ones are the tightest: with up to
+     * O(n^2) constraints stored, such a call costs O(n^3). TinySync retains at most two points of each type, so its
+     * cost is constant either way; for MiniSync, n can be bounded through
+     * {@link MiniSyncAlgorithm#setMaxRetainedPoints(int)}.
+     *
+     * @return true if the current constraints changed.
+     */
+    private boolean updateConstraints() {
+        Line previous_low = this.current_low;
+        Line previous_high = this.current_high;
+        double previous_diff = this.diff_factor;
+
+        if (!this.incremental) {
+            this.evaluateConstraints(this.low_constraints, this.high_constraints, true);
+            this.current_tightest = false;
+        } else if (this.full_scan) {
+            if (!this.selectTightest(this.low_constraints, this.high_constraints)) {
+                this.evaluateConstraints(this.low_constraints, this.high_constraints, true);
+                this.current_tightest = this.isTightest(this.current_low, this.current_high);
+            }
+        } else if (!this.current_tightest ||
+                !this.selectTightest(this.new_low_constraints, this.new_high_constraints)) {
+            // diff_factor never increases and every pair of older constraints has already been compared against it,
+            // so only pairs including at least one new constraint can improve on the current estimate.
+            this.evaluateConstraints(this.new_low_constraints, this.high_constraints, true);
+            this.evaluateConstraints(this.new_high_constraints, this.low_constraints, false);
+            this.current_tightest = this.isTightest(this.current_low, this.current_high);
+        }
+        this.full_scan = false;
+
+        this.new_low_constraints.clear();
+        this.new_high_constraints.clear();
+
+        if (this.current_low == null) return false; // no constraints left after expiring points
+
+        if (this.metrics == null) {
+            this.cleanup();
+        } else {
+            int retained = this.low_points.size() + this.high_points.size();
+            this.cleanup();
+            this.metrics.update(this.low_points.size(), this.high_points.size(),
+                    this.low_constraints.size(), this.high_constraints.size(),
+                    retained - this.low_points.size() - this.high_points.size(),
+                    this.diff_factor < previous_diff);
+        }
+        return this.current_low != previous_low || this.current_high != previous_high;
     }
 
-    private void recalculateEstimates() throws TimeSyncAlgorithmException {
+    /**
+     * Discards the points which fall out of the configured window once a data point with the given Tb is added.
+     */
+    private void slideWindow(double Tb) {
+        double cutoff = Tb - this.time_window;
+        if (this.sample_window != null) {
+            int i = this.sample_window_count % this.sample_window.length;
+            this.sample_window[i] = Tb;
+            ++this.sample_window_count;
+            if (this.sample_window_count >= this.sample_window.length)
+                cutoff = Math.max(cutoff, this.sample_window[(i + 1) % this.sample_window.length]);
+        }
 
-        double tmp_diff;
-        for (Line low : low_constraints) {
-            for (Line high : high_constraints) {
-                tmp_diff = (low.A - high.A) * (high.B - low.B);
-                if (tmp_diff < this.diff_factor) {
-                    this.diff_factor = tmp_diff;
-                    this.current_low = low;
-                    this.current_high = high;
-                }
+        if ((this.low_points.isEmpty() || this.low_points.first().x >= cutoff) &&
+                (this.high_points.isEmpty() || this.high_points.first().x >= cutoff))
+            return;
+
+        // points are ordered by x, so the expired ones are a prefix of each set
+        Set<LowPoint> expired_low = new HashSet<>(this.low_points.headSet(new LowPoint(cutoff, 0)));
+        Set<HighPoint> expired_high = new HashSet<>(this.high_points.headSet(new HighPoint(cutoff, 0)));
+        this.low_points.removeAll(expired_low);
+        this.high_points.removeAll(expired_high);
+
+        Predicate<Line> expired = new Predicate<Line>() {
+            @Override
+            public boolean test(Line line) {
+                return expired_low.contains(line.lowPoint) || expired_high.contains(line.highPoint);
             }
+        };
+        this.low_constraints.removeIf(expired);
+        this.high_constraints.removeIf(expired);
+        this.new_low_constraints.removeIf(expired);
+        this.new_high_constraints.removeIf(expired);
+
+        this.pointsExpired(expired_low, expired_high);
+
+        if (this.current_low != null && (expired.test(this.current_low) || expired.test(this.current_high))) {
+            // re-derive the best constraints from the ones still in the window
+            this.current_low = null;
+            this.current_high = null;
+            this.diff_factor = Double.MAX_VALUE;
+            this.full_scan = true;
+            this.current_tightest = false;
         }
+    }
 
-        this.cleanup();
-
-        this.drift.value = (current_low.A + current_high.A) / 2;
-        this.offset.value = (current_low.B + current_high.B) / 2;
-        this.drift.error = (current_low.A - current_high.A) / 2;
-        this.offset.error = (current_high.B - current_low.B) / 2;
+    /**
+     * Publishes the estimates derived from the current constraints, if they changed.
+     *
+     * @param datapoints Number of processed data points to record in the new estimate.
+     * @param Tr         Timestamp to record in the new estimate.
+     */
+    private void publishEstimates(int datapoints, double Tr) throws TimeSyncAlgorithmException {
+        this.publishEstimate(this.nextEstimate(this.estimate.get(), datapoints, Tr));
+    }
 
-        if (this.drift.value < 0)
+    /**
+     * Publishes the given estimate, if it differs from the current one.
+     *
+     * @throws TimeSyncAlgorithmException If the drift derived from the current constraints is negative.
+     */
+    private void publishEstimate(SyncEstimate estimate) throws TimeSyncAlgorithmException {
+        // only publish a new snapshot if the estimates actually changed
+        if (estimate != this.estimate.get())
+            this.estimate.set(estimate);
+
+        if (this.current_low == null) return;
+        double drift = (current_low.A + current_high.A) / 2;
+        if (drift < 0)
             throw new TimeSyncAlgorithmException(
                     "Drift must be >= 0 for monotonically increasing clocks (current drift value: %f)",
-                    this.drift.value);
+                    drift);
+    }
+
+    /**
+     * Derives the estimates from the current constraints.
+     *
+     * @param previous   The previous estimate, which is returned if the estimates did not change.
+     * @param datapoints Number of processed data points to record in a new estimate.
+     * @param Tr         Timestamp to record in a new estimate.
+     */
+    private SyncEstimate nextEstimate(SyncEstimate previous, int datapoints, double Tr) {
+        if (this.current_low == null) return previous;
+
+        double drift = (current_low.A + current_high.A) / 2;
+        double offset = (current_low.B + current_high.B) / 2;
+        double drift_error = (current_low.A - current_high.A) / 2;
+        double offset_error = (current_high.B - current_low.B) / 2;
+
+        if (previous.sameAs(drift, drift_error, offset, offset_error)) return previous;
+        return new SyncEstimate(drift, drift_error, offset, offset_error, datapoints, Tr);
+    }
+
+    /**
+     * Compares every constraint in outer against every constraint in inner, in parallel if there are enough pairs.
+     * Either way the selected pair is the first one with the lowest diff_factor in iteration order, so the results do
+     * not depend on the number of threads.
+     *
+     * @param outer_low true if outer holds the low constraints.
+     */
+    private void evaluateConstraints(Collection<Line> outer, Collection<Line> inner, boolean outer_low) {
+        if ((long) outer.size() * inner.size() < this.parallel_threshold) {
+            for (Line o : outer)
+                for (Line i : inner) {
+                    if (outer_low) this.evaluateConstraints(o, i);
+                    else this.evaluateConstraints(i, o);
+                }
+            return;
+        }
+
+        Line[] outer_array = outer.toArray(new Line[0]);
+        Line[] inner_array = inner.toArray(new Line[0]);
+        ConstraintScan scan = new ConstraintScan(outer_array, inner_array, outer_low,
+                0, (long) outer_array.length * inner_array.length);
+        ForkJoinPool.commonPool().invoke(scan);
+        if (scan.low != null) this.evaluateConstraints(scan.low, scan.high);
+    }
+
+    /**
+     * Selects the tightest pair among the current and the given constraints, if there is one: the low constraint with
+     * both the lowest drift bound (A) and the highest offset bound (B) of all low constraints, and the high constraint
+     * with both the highest drift bound and the lowest offset bound of all high constraints, whose bounds do not cross.
+     * Then neither factor of (low.A - high.A) * (high.B - low.B) is negative for any pair, and no factor is lower than
+     * for the tightest pair, so the tightest pair has the lowest diff_factor of all pairs and this selects the same pair
+     * as comparing every pair, up to ties.
+     * <p>
+     * If the current constraints are the tightest of all retained ones, it suffices to pass the new constraints. As long
+     * as remote timestamps are non-negative and the data points are consistent with a constant drift, the current
+     * constraints stay the tightest from one data point to the next.
+     *
+     * @return false if there is no tightest pair, in which case nothing changed.
+     */
+    private boolean selectTightest(Collection<Line> lows, Collection<Line> highs) {
+        Line low = tightest(this.current_low, lows, true);
+        Line high = tightest(this.current_high, highs, false);
+        if (low == null || high == null || low.A < high.A || high.B < low.B) return false;
+
+        this.evaluateConstraints(low, high);
+        this.current_tightest = this.current_low == low && this.current_high == high;
+        return true;
+    }
+
+    /**
+     * @return The constraint among current (unless null) and candidates which dominates all others, or null if there
+     * is none. Ties are resolved in favour of current, then of the first candidate.
+     */
+    private static Line tightest(Line current, Collection<Line> candidates, boolean low) {
+        Line tightest = current;
+        for (Line line : candidates) {
+            if (tightest == null || (low ? line.A < tightest.A || (line.A == tightest.A && line.B > tightest.B)
+                    : line.A > tightest.A || (line.A == tightest.A && line.B < tightest.B)))
+                tightest = line;
+        }
+        if (tightest == null || (current != null && !dominates(tightest, current, low))) return null;
+        for (Line line : candidates)
+            if (!dominates(tightest, line, low)) return null;
+        return tightest;
+    }
+
+    /**
+     * @return true if the given constraints are the tightest of all retained ones.
+     */
+    private boolean isTightest(Line low, Line high) {
+        if (low == null || low.A < high.A || high.B < low.B) return false;
+        for (Line line : this.low_constraints)
+            if (!dominates(low, line, true)) return false;
+        for (Line line : this.high_constraints)
+            if (!dominates(high, line, false)) return false;
+        return true;
+    }
+
+    /**
+     * @return true if both bounds of a are at least as tight as those of b.
+     */
+    private static boolean dominates(Line a, Line b, boolean low) {
+        if (low) return a.A <= b.A && a.B >= b.B;
+        return a.A >= b.A && a.B <= b.B;
+    }
+
+    private void evaluateConstraints(Line low, Line high) {
+        double tmp_diff = (low.A - high.A) * (high.B - low.B);
+        if (tmp_diff < this.diff_factor) {
+            this.diff_factor = tmp_diff;
+            this.current_low = low;
+            this.current_high = high;
+        }
     }
 
     protected LowPoint addLowPoint(double Tb, double To) {
@@ -130,10 +560,12 @@ abstract class BaseAlgorithm implements TimeSyncAlgorithm {
         switch (constraint.type) {
             case LOW_TO_HIGH: {
                 this.low_constraints.add(constraint);
+                this.new_low_constraints.add(constraint);
                 break;
             }
             case HIGH_TO_LOW: {
                 this.high_constraints.add(constraint);
+                this.new_high_constraints.add(constraint);
                 break;
             }
         }
@@ -143,42 +575,50 @@ abstract class BaseAlgorithm implements TimeSyncAlgorithm {
 
     abstract void cleanup();
 
-    private class Value {
-        double value;
-        double error;
-
-        Value(double v, double e) {
-            this.value = v;
-            this.error = e;
-        }
-
-        Value() {
-            this(0, 0);
-        }
+    /**
+     * Called when points fall out of the window, after they and their constraints have been removed.
+     */
+    void pointsExpired(Set<LowPoint> low, Set<HighPoint> high) {
     }
 
     @Override
     public double getDrift() {
-        return this.drift.value;
+        return this.getEstimate().drift;
     }
 
     @Override
     public double getDriftError() {
-        return this.drift.error;
+        return this.getEstimate().driftError;
     }
 
     @Override
     public double getOffset() {
-        return this.offset.value;
+        return this.getEstimate().offset;
     }
 
     @Override
     public double getOffsetError() {
-        return this.offset.error;
+        return this.getEstimate().offsetError;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * With lazy updates (see {@link #setLazyUpdates(int)}), the data points added since the last update are processed
+     * first.
+     *
+     * @throws IllegalStateException If processing them failed, wrapping the {@link TimeSyncAlgorithmException} which
+     *                               adding them would otherwise have thrown.
+     */
+    @Override
+    public SyncEstimate getEstimate() {
+        this.flush();
+        return this.estimate.get();
     }
 
     @Override
     public int numDataPoints() {
+        this.flush();
         return this.processed_datapoints;
     }
 
@@ -197,4 +637,243 @@ abstract class BaseAlgorithm implements TimeSyncAlgorithm {
     public void setMinimumRemoteDelay(double d) {
         this.minimum_remote_delay = d;
     }
+
+    @Override
+    public void setTimeWindow(double horizon) {
+        if (!(horizon > 0))
+            throw new IllegalArgumentException("Window horizon must be > 0.");
+        this.time_window = horizon;
+    }
+
+    @Override
+    public void setSampleWindow(int samples) {
+        if (samples < 0 || samples == 1)
+            throw new IllegalArgumentException("Window size must be 0 or at least 2 data points.");
+        this.sample_window = samples == 0 ? null : new double[samples];
+        this.sample_window_count = 0;
+    }
+
+    @Override
+    public void addFilter(SampleFilter filter) {
+        this.filters.add(filter);
+    }
+
+    /**
+     * Defers the processing of data points until the estimates are read, for links on which data points are added far
+     * more often than the estimates are read. Data points are then only stored when added, and are processed as a batch
+     * (see {@link #addDataPoints(double[], double[], double[])}) by the next call to one of the getters (including the
+     * translation methods), or once the given number of them are pending, whichever comes first. The estimates are the
+     * same as if the data points had been added as they arrived, but exceptions are thrown by the getter which triggers
+     * the processing, wrapped in an {@link IllegalStateException}. Batches added through
+     * {@link #addDataPoints(double[], double[], double[])} are still processed immediately.
+     * <p>
+     * Since the getters may then modify the state of the algorithm, they must not run concurrently with the addition
+     * of data points. The getters synchronize on the algorithm instance when they process pending data points, so it
+     * suffices to add data points while holding its monitor, as {@link com.github.molguin92.minisync.manager.SyncManager}
+     * does.
+     *
+     * @param maxPending Maximum number of pending data points, or 0 to process every data point as soon as it is added
+     *                   (the default).
+     */
+    public void setLazyUpdates(int maxPending) {
+        if (maxPending < 0)
+            throw new IllegalArgumentException("Number of pending data points must be >= 0.");
+        this.max_pending = maxPending;
+    }
+
+    /**
+     * Selects whether the constraints created by each data point are only compared against the current ones where
+     * possible, and otherwise against all opposite constraints (the default), or whether every pair of constraints is
+     * compared after each data point. The estimates are the same either way, except for ties between pairs; comparing
+     * every pair is only useful as a reference.
+     *
+     * @param incremental false to compare every pair of constraints after each data point.
+     */
+    public void setIncrementalSelection(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets the number of constraint pairs above which they are compared in parallel on the common
+     * {@link ForkJoinPool}, instead of on the calling thread. This only matters when many points are retained, for
+     * instance with large windows or when replaying long traces; the estimates are the same either way.
+     *
+     * @param pairs Number of low-high constraint pairs, or {@link Long#MAX_VALUE} to never compare them in parallel.
+     */
+    public void setParallelThreshold(long pairs) {
+        if (pairs < 1)
+            throw new IllegalArgumentException("Parallel threshold must be >= 1.");
+        this.parallel_threshold = pairs;
+    }
+
+    @Override
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The metrics to record to, or null if disabled.
+     */
+    AlgorithmMetrics metrics() {
+        return this.metrics;
+    }
+
+    @Override
+    public int checkpointSize() {
+        this.flush();
+        return Checkpoint.size(this.low_points.size(), this.high_points.size(),
+                Checkpoint.windowEntries(this.sample_window, this.sample_window_count));
+    }
+
+    @Override
+    public void checkpoint(ByteBuffer buffer) {
+        if (buffer.remaining() < this.checkpointSize()) throw new BufferOverflowException();
+
+        Checkpoint.writeHeader(buffer, this.processed_datapoints, this.diff_factor, this.estimate.get());
+        putConstraint(buffer, this.current_low);
+        putConstraint(buffer, this.current_high);
+
+        buffer.putInt(this.low_points.size());
+        for (LowPoint lp : this.low_points)
+            buffer.putDouble(lp.x).putDouble(lp.y);
+        buffer.putInt(this.high_points.size());
+        for (HighPoint hp : this.high_points)
+            buffer.putDouble(hp.x).putDouble(hp.y);
+        Checkpoint.writeWindow(buffer, this.sample_window, this.sample_window_count);
+    }
+
+    private static void putConstraint(ByteBuffer buffer, Line constraint) {
+        if (constraint == null) {
+            for (int i = 0; i < 4; ++i)
+                buffer.putDouble(Double.NaN);
+            return;
+        }
+
+        buffer.putDouble(constraint.lowPoint.x).putDouble(constraint.lowPoint.y);
+        buffer.putDouble(constraint.highPoint.x).putDouble(constraint.highPoint.y);
+    }
+
+    @Override
+    public void restore(ByteBuffer buffer) {
+        if (this.processed_datapoints > 0)
+            throw new IllegalStateException("Checkpoints can only be restored into a new algorithm instance.");
+
+        byte version = Checkpoint.readHeader(buffer);
+        int processed_datapoints = buffer.getInt();
+        double diff_factor = buffer.getDouble();
+        SyncEstimate estimate = Checkpoint.readEstimate(buffer);
+        double[] current = new double[8];
+        for (int i = 0; i < current.length; ++i)
+            current[i] = buffer.getDouble();
+
+        double[] low = new double[2 * Checkpoint.readCount(buffer)];
+        for (int i = 0; i < low.length; ++i)
+            low[i] = buffer.getDouble();
+        double[] high = new double[2 * Checkpoint.readCount(buffer)];
+        for (int i = 0; i < high.length; ++i)
+            high[i] = buffer.getDouble();
+        int window_entries = Checkpoint.readWindow(buffer, this.sample_window, version);
+
+        // add the points in the order in which they were originally added, which rebuilds the constraints as well as
+        // any state kept by subclasses
+        int l = 0;
+        int h = 0;
+        while (l < low.length || h < high.length) {
+            if (h == high.length || (l < low.length && low[l] <= high[h])) {
+                this.addLowPoint(low[l], low[l + 1]);
+                l += 2;
+            } else {
+                this.addHighPoint(high[h], high[h + 1]);
+                h += 2;
+            }
+        }
+        this.new_low_constraints.clear();
+        this.new_high_constraints.clear();
+
+        if (!Double.isNaN(current[0])) {
+            this.current_low = findConstraint(this.low_constraints, current, 0);
+            this.current_high = findConstraint(this.high_constraints, current, 4);
+        }
+        this.diff_factor = diff_factor;
+        this.current_tightest = false;
+        this.sample_window_count = window_entries;
+        this.processed_datapoints = processed_datapoints;
+        this.estimate.set(estimate);
+    }
+
+    /**
+     * Finds the constraint through the points given by coords[offset...offset + 4].
+     */
+    private static Line findConstraint(Set<Line> constraints, double[] coords, int offset) {
+        for (Line constraint : constraints) {
+            if (constraint.lowPoint.x == coords[offset] && constraint.lowPoint.y == coords[offset + 1] &&
+                    constraint.highPoint.x == coords[offset + 2] && constraint.highPoint.y == coords[offset + 3])
+                return constraint;
+        }
+        throw new IllegalArgumentException("Inconsistent checkpoint: current constraints are not retained.");
+    }
+
+    /**
+     * Finds the best pair among a range of the outer x inner constraint pairs, numbered in the order a sequential scan
+     * would visit them. Ranges are split in halves, and ties are resolved in favour of the lower half.
+     */
+    private static final class ConstraintScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Line[] outer;
+        private final Line[] inner;
+        private final boolean outer_low;
+        private final long start;
+        private final long end;
+
+        double diff = Double.MAX_VALUE;
+        Line low = null;
+        Line high = null;
+
+        ConstraintScan(Line[] outer, Line[] inner, boolean outer_low, long start, long end) {
+            this.outer = outer;
+            this.inner = inner;
+            this.outer_low = outer_low;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= PARALLEL_LEAF_PAIRS) {
+                this.scan();
+                return;
+            }
+
+            long middle = (this.start + this.end) >>> 1;
+            ConstraintScan first = new ConstraintScan(this.outer, this.inner, this.outer_low, this.start, middle);
+            ConstraintScan second = new ConstraintScan(this.outer, this.inner, this.outer_low, middle, this.end);
+            invokeAll(first, second);
+
+            ConstraintScan best = second.diff < first.diff ? second : first;
+            this.diff = best.diff;
+            this.low = best.low;
+            this.high = best.high;
+        }
+
+        private void scan() {
+            int o = (int) (this.start / this.inner.length);
+            int i = (int) (this.start % this.inner.length);
+            for (long pair = this.start; pair < this.end; ++pair) {
+                Line low = this.outer_low ? this.outer[o] : this.inner[i];
+                Line high = this.outer_low ? this.inner[i] : this.outer[o];
+                double tmp_diff = (low.A - high.A) * (high.B - low.B);
+                if (tmp_diff < this.diff) {
+                    this.diff = tmp_diff;
+                    this.low = low;
+                    this.high = high;
+                }
+
+                if (++i == this.inner.length) {
+                    i = 0;
+                    ++o;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,48 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.algorithm;
+
+/**
+ * A translated timestamp together with the bounds within which the true value is guaranteed to lie, given the error
+ * bounds of the estimate used for the translation.
+ */
+public final class BoundedTime {
+    public final double value;
+    public final double min;
+    public final double max;
+
+    public BoundedTime(double value, double min, double max) {
+        this.value = value;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return true iff min &lt;= t &lt;= max.
+     */
+    public boolean contains(double t) {
+        return this.min <= t && t <= this.max;
+    }
+
+    @Override
+    public String toString() {
+        return this.value + " [" + this.min + ", " + this.max + ']';
+    }
+}
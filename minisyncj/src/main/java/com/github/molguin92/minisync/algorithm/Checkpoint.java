@@ -0,0 +1,156 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.algorithm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary checkpoint format shared by all algorithms, see {@link TimeSyncAlgorithm#checkpoint(ByteBuffer)}.
+ * <p>
+ * Layout (in the byte order of the buffer):
+ * <pre>
+ *     int     magic ("MSCP")
+ *     byte    version
+ *     int     number of processed data points
+ *     double  diff_factor
+ *     double  drift, drift error, offset, offset error
+ *     int     number of data points of the estimate
+ *     double  timestamp of the estimate
+ *     double  x, y of the low and high point of the current low constraint (NaN if there is none)
+ *     double  x, y of the low and high point of the current high constraint (NaN if there is none)
+ *     int     number of low points n, followed by n (x, y) doubles, ordered by x
+ *     int     number of high points m, followed by m (x, y) doubles, ordered by x
+ *     int     number of entries w of the sample window, followed by w doubles: the adjusted Tb of the most recent data
+ *             points, oldest first (since version 2; 0 if no sample window is configured)
+ * </pre>
+ * Since all algorithms retain points and constraints in the same terms, a checkpoint can be restored into any of them.
+ * Version 1 checkpoints, which lack the sample window, can still be restored.
+ */
+final class Checkpoint {
+
+    static final int MAGIC = 0x4D534350;
+    static final byte VERSION = 2;
+
+    private static final int FIXED_SIZE = 4 + 1 + 4 + 8 + (4 * 8 + 4 + 8) + 8 * 8 + 4 + 4; // as of version 1
+
+    private Checkpoint() {
+    }
+
+    /**
+     * @return The size in bytes of a checkpoint with the given number of retained points and sample window entries.
+     */
+    static int size(int low_points, int high_points, int window_entries) {
+        return FIXED_SIZE + 2 * 8 * (low_points + high_points) + 4 + 8 * window_entries;
+    }
+
+    /**
+     * @param window Sample window ring buffer, or null if there is none.
+     * @param count  Number of data points added to the ring buffer so far.
+     * @return The number of entries of the sample window in a checkpoint.
+     */
+    static int windowEntries(double[] window, int count) {
+        return window == null ? 0 : Math.min(count, window.length);
+    }
+
+    static void writeHeader(ByteBuffer buffer, int processed_datapoints, double diff_factor, SyncEstimate estimate) {
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putInt(processed_datapoints);
+        buffer.putDouble(diff_factor);
+        buffer.putDouble(estimate.drift);
+        buffer.putDouble(estimate.driftError);
+        buffer.putDouble(estimate.offset);
+        buffer.putDouble(estimate.offsetError);
+        buffer.putInt(estimate.dataPoints);
+        buffer.putDouble(estimate.timestamp);
+    }
+
+    /**
+     * Checks the magic number and version at the position of the buffer and skips them.
+     *
+     * @return The version of the checkpoint.
+     */
+    static byte readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < FIXED_SIZE || buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException("Not a checkpoint.");
+
+        byte version = buffer.get();
+        if (version < 1 || version > VERSION)
+            throw new IllegalArgumentException(String.format("Unsupported checkpoint version %d.", version));
+        return version;
+    }
+
+    static SyncEstimate readEstimate(ByteBuffer buffer) {
+        double drift = buffer.getDouble();
+        double drift_error = buffer.getDouble();
+        double offset = buffer.getDouble();
+        double offset_error = buffer.getDouble();
+        int datapoints = buffer.getInt();
+        double timestamp = buffer.getDouble();
+        if (datapoints == 0) return SyncEstimate.INITIAL;
+        return new SyncEstimate(drift, drift_error, offset, offset_error, datapoints, timestamp);
+    }
+
+    /**
+     * Reads a point count and checks that the buffer holds that many points.
+     */
+    static int readCount(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) throw new IllegalArgumentException("Truncated checkpoint.");
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() < 2 * 8 * count)
+            throw new IllegalArgumentException("Truncated checkpoint.");
+        return count;
+    }
+
+    /**
+     * Writes the entries of the sample window, oldest first.
+     *
+     * @param window Sample window ring buffer, or null if there is none.
+     * @param count  Number of data points added to the ring buffer so far.
+     */
+    static void writeWindow(ByteBuffer buffer, double[] window, int count) {
+        int entries = windowEntries(window, count);
+        buffer.putInt(entries);
+        for (int i = count - entries; i < count; ++i)
+            buffer.putDouble(window[i % window.length]);
+    }
+
+    /**
+     * Reads the entries of the sample window written by {@link #writeWindow(ByteBuffer, double[], int)}, if the
+     * checkpoint has them, and keeps the most recent ones which fit into the given ring buffer.
+     *
+     * @param window  Sample window ring buffer of the restored algorithm, or null if there is none.
+     * @param version Version of the checkpoint.
+     * @return The number of entries stored at the start of the ring buffer.
+     */
+    static int readWindow(ByteBuffer buffer, double[] window, byte version) {
+        if (version < 2) return 0;
+        if (buffer.remaining() < 4) throw new IllegalArgumentException("Truncated checkpoint.");
+        int entries = buffer.getInt();
+        if (entries < 0 || buffer.remaining() < 8 * entries)
+            throw new IllegalArgumentException("Truncated checkpoint.");
+
+        int kept = window == null ? 0 : Math.min(entries, window.length);
+        for (int i = 0; i < entries - kept; ++i)
+            buffer.getDouble();
+        for (int i = 0; i < kept; ++i)
+            window[i] = buffer.getDouble();
+        return kept;
+    }
+}
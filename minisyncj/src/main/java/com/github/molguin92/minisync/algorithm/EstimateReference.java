@@ -0,0 +1,43 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.algorithm;
+
+/**
+ * Holds the current estimate of an algorithm, which is written by the ingesting thread and read from any thread.
+ * <p>
+ * This is the Java 8 implementation, which uses a volatile field. On Java 9+, the multi-release JAR replaces it with
+ * one which uses release writes and acquire reads through a {@code VarHandle}, avoiding the full fence of a volatile
+ * write. Since {@link SyncEstimate} is immutable, both are safe publications.
+ */
+final class EstimateReference {
+
+    private volatile SyncEstimate value;
+
+    EstimateReference(SyncEstimate value) {
+        this.value = value;
+    }
+
+    SyncEstimate get() {
+        return this.value;
+    }
+
+    void set(SyncEstimate value) {
+        this.value = value;
+    }
+}
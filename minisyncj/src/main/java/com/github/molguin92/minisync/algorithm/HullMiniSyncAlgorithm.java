@@ -0,0 +1,150 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.algorithm;
+
+import com.github.molguin92.minisync.constraint.HighPoint;
+import com.github.molguin92.minisync.constraint.Line;
+import com.github.molguin92.minisync.constraint.LowPoint;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Implementation of the MiniSync algorithm described in [1, 2], which retains the low and high points as convex
+ * hulls.
+ * <p>
+ * A point Aj is kept iff M(Ai, Aj) &gt; M(Aj, Ak) for its neighbours Ai and Ak (low points) or M(Ai, Aj) &lt; M(Aj,
+ * Ak) (high points), i.e. iff it is a vertex of the upper hull of the low points or of the lower hull of the high
+ * points. Since points arrive in order of increasing x, both hulls are kept as monotone stacks: when a new point
+ * arrives, vertices which no longer satisfy the condition are popped off the top of the stack (Andrew's monotone
+ * chain). Retaining a point thus costs amortized O(1) and no slopes need to be stored. Popped points are only
+ * discarded once they are no longer part of the current constraints. The constraints between the retained points are
+ * still stored, so memory is quadratic in the number of hull vertices, and discarding points scans all of them.
+ * <p>
+ * As long as remote timestamps are non-negative and the data points are consistent with a constant drift, the selected
+ * constraints are the same as those of an exhaustive scan of every low x high constraint pair through all data points
+ * seen so far. Those of {@link MiniSyncAlgorithm} can differ, since its cleanup does not retain the hulls.
+ * <p>
+ * [1] S. Yoon, C. Veerarittiphan, and M. L. Sichitiu. 2007. Tiny-sync: Tight time synchronization for wireless sensor networks. ACM Trans. Sen. Netw. 3, 2, Article 8 (June 2007). DOI: 10.1145/1240226.1240228
+ * <p>
+ * [2] M. L. Sichitiu and C. Veerarittiphan, "Simple, accurate time synchronization for wireless sensor networks," 2003 IEEE Wireless Communications and Networking, 2003. WCNC 2003., New Orleans, LA, USA, 2003, pp. 1266-1273 vol.2. DOI: 10.1109/WCNC.2003.1200555. URL: http://ieeexplore.ieee.org/stamp/stamp.jsp?tp=&arnumber=1200555&isnumber=27029
+ */
+public class HullMiniSyncAlgorithm extends BaseAlgorithm {
+
+    private final List<LowPoint> low_hull; // upper hull of the low points, ordered by x
+    private final List<HighPoint> high_hull; // lower hull of the high points, ordered by x
+
+    // points popped off the hulls which have not been discarded yet
+    private final List<LowPoint> popped_low;
+    private final List<HighPoint> popped_high;
+
+    public HullMiniSyncAlgorithm() {
+        super();
+        this.low_hull = new ArrayList<>();
+        this.high_hull = new ArrayList<>();
+        this.popped_low = new ArrayList<>();
+        this.popped_high = new ArrayList<>();
+    }
+
+    /**
+     * Cross product of the vectors OA and OB. Positive iff O, A, B make a counter-clockwise turn.
+     */
+    private static double cross(double ox, double oy, double ax, double ay, double bx, double by) {
+        return (ax - ox) * (by - oy) - (ay - oy) * (bx - ox);
+    }
+
+    @Override
+    protected LowPoint addLowPoint(double Tb, double To) {
+        LowPoint lp = super.addLowPoint(Tb, To);
+
+        // pop vertices which do not make a clockwise turn with the new point, i.e. M(Ai, Aj) <= M(Aj, Ak)
+        for (int top = this.low_hull.size() - 1; top >= 1; --top) {
+            LowPoint Ai = this.low_hull.get(top - 1);
+            LowPoint Aj = this.low_hull.get(top);
+            if (cross(Ai.x, Ai.y, Aj.x, Aj.y, lp.x, lp.y) < 0) break;
+            this.popped_low.add(this.low_hull.remove(top));
+        }
+        this.low_hull.add(lp);
+        return lp;
+    }
+
+    @Override
+    protected HighPoint addHighPoint(double Tb, double Tr) {
+        HighPoint hp = super.addHighPoint(Tb, Tr);
+
+        // pop vertices which do not make a counter-clockwise turn with the new point, i.e. M(Ai, Aj) >= M(Aj, Ak)
+        for (int top = this.high_hull.size() - 1; top >= 1; --top) {
+            HighPoint Ai = this.high_hull.get(top - 1);
+            HighPoint Aj = this.high_hull.get(top);
+            if (cross(Ai.x, Ai.y, Aj.x, Aj.y, hp.x, hp.y) > 0) break;
+            this.popped_high.add(this.high_hull.remove(top));
+        }
+        this.high_hull.add(hp);
+        return hp;
+    }
+
+    @Override
+    void pointsExpired(Set<LowPoint> low, Set<HighPoint> high) {
+        // the remaining hull vertices are still a convex chain; points popped by expired points are lost
+        this.low_hull.removeAll(low);
+        this.popped_low.removeAll(low);
+        this.high_hull.removeAll(high);
+        this.popped_high.removeAll(high);
+    }
+
+    @Override
+    void cleanup() {
+        Set<LowPoint> low_points_tbr = new HashSet<>();
+        for (Iterator<LowPoint> it = this.popped_low.iterator(); it.hasNext(); ) {
+            LowPoint lp = it.next();
+            if (this.current_high.lowPoint != lp && this.current_low.lowPoint != lp) {
+                low_points_tbr.add(lp);
+                it.remove();
+            }
+        }
+
+        Set<HighPoint> high_points_tbr = new HashSet<>();
+        for (Iterator<HighPoint> it = this.popped_high.iterator(); it.hasNext(); ) {
+            HighPoint hp = it.next();
+            if (this.current_high.highPoint != hp && this.current_low.highPoint != hp) {
+                high_points_tbr.add(hp);
+                it.remove();
+            }
+        }
+
+        if (low_points_tbr.isEmpty() && high_points_tbr.isEmpty()) return;
+
+        this.low_points.removeAll(low_points_tbr);
+        this.high_points.removeAll(high_points_tbr);
+
+        Predicate<Line> discarded = new Predicate<Line>() {
+            @Override
+            public boolean test(Line line) {
+                return low_points_tbr.contains(line.lowPoint) || high_points_tbr.contains(line.highPoint);
+            }
+        };
+        this.high_constraints.removeIf(discarded);
+        this.low_constraints.removeIf(discarded);
+    }
+}
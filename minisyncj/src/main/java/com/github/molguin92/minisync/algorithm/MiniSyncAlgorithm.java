@@ -38,13 +38,41 @@ import java.util.function.Predicate;
  */
 public class MiniSyncAlgorithm extends BaseAlgorithm {
 
+    private static final int MIN_RETAINED_POINTS = 4;
+
     private MultiKeyMap<LowPoint, Double> low_slopes;
     private MultiKeyMap<HighPoint, Double> high_slopes;
+    private int max_retained_points; // per type, 0 for no limit
 
     public MiniSyncAlgorithm() {
         super();
         this.low_slopes = new MultiKeyMap<>();
         this.high_slopes = new MultiKeyMap<>();
+        this.max_retained_points = 0;
+    }
+
+    /**
+     * Limits the number of low points and of high points retained by the algorithm.
+     * <p>
+     * Without a limit, the number of retained points grows slowly but without bound on long traces, and the slopes
+     * and constraints stored for them grow quadratically. With a limit of n, at most n low and n high points, n^2
+     * slopes of each type and 2 n^2 constraints are stored, so memory per instance is bounded.
+     * <p>
+     * Whenever cleanup leaves more than n points of a type, points are evicted in order of increasing contribution to
+     * the bounds: the contribution of a point is its vertical distance above (low points) or below (high points) the
+     * segment joining its retained neighbours, which is how much the bound at that x would loosen without it. The
+     * oldest and newest points and those in the current constraints are never evicted, so the current estimates do not
+     * change; only future estimates may be looser than without a limit. Evictions and the largest loosening they
+     * caused are reported through {@link AlgorithmMetrics#getEvictedPoints()} and
+     * {@link AlgorithmMetrics#getMaxEvictionLoosening()}.
+     *
+     * @param points Maximum number of points of each type, at least {@value #MIN_RETAINED_POINTS}, or 0 for no limit.
+     */
+    public void setMaxRetainedPoints(int points) {
+        if (points != 0 && points < MIN_RETAINED_POINTS)
+            throw new IllegalArgumentException(
+                    String.format("At least %d points must be retained.", MIN_RETAINED_POINTS));
+        this.max_retained_points = points;
     }
 
     @Override
@@ -131,34 +159,127 @@ public class MiniSyncAlgorithm extends BaseAlgorithm {
             }
         });
 
-        // slopes
+        this.removeSlopes(low_points_tbr, high_points_tbr);
+
+        if (this.max_retained_points > 0) this.enforceCap();
+    }
+
+    /**
+     * Removes the slopes involving the given points, which have already been removed from the retained points.
+     */
+    private void removeSlopes(Set<LowPoint> low_points_tbr, Set<HighPoint> high_points_tbr) {
         low_points_tbr.forEach(new Consumer<LowPoint>() {
             @Override
             public void accept(LowPoint r_lp) {
-                MiniSyncAlgorithm.this.low_points.forEach(new Consumer<LowPoint>() {
+                Consumer<LowPoint> remove = new Consumer<LowPoint>() {
                     @Override
                     public void accept(LowPoint lp) {
                         MiniSyncAlgorithm.this.low_slopes.removeMultiKey(r_lp, lp);
                         MiniSyncAlgorithm.this.low_slopes.removeMultiKey(lp, r_lp);
                     }
-                });
+                };
+                MiniSyncAlgorithm.this.low_points.forEach(remove);
+                // slopes between two removed points would otherwise never be freed
+                low_points_tbr.forEach(remove);
             }
         });
 
         high_points_tbr.forEach(new Consumer<HighPoint>() {
             @Override
             public void accept(HighPoint r_hp) {
-                MiniSyncAlgorithm.this.high_points.forEach(new Consumer<HighPoint>() {
+                Consumer<HighPoint> remove = new Consumer<HighPoint>() {
                     @Override
                     public void accept(HighPoint hp) {
                         MiniSyncAlgorithm.this.high_slopes.removeMultiKey(r_hp, hp);
                         MiniSyncAlgorithm.this.high_slopes.removeMultiKey(hp, r_hp);
                     }
-                });
+                };
+                MiniSyncAlgorithm.this.high_points.forEach(remove);
+                high_points_tbr.forEach(remove);
             }
         });
     }
 
+    /**
+     * Evicts the points which contribute least to the bounds until at most max_retained_points of each type remain.
+     */
+    private void enforceCap() {
+        Set<LowPoint> evicted_low = new HashSet<>();
+        while (this.low_points.size() > this.max_retained_points) {
+            LowPoint evict = null;
+            double min_contribution = Double.POSITIVE_INFINITY;
+            LowPoint Ai = this.low_points.first();
+            LowPoint Aj = this.low_points.higher(Ai);
+            for (LowPoint Ak = this.low_points.higher(Aj); Ak != null;
+                 Ai = Aj, Aj = Ak, Ak = this.low_points.higher(Ak)) {
+                if (Aj == this.current_low.lowPoint || Aj == this.current_high.lowPoint) continue;
+                double contribution = Aj.y - chord(Ai.x, Ai.y, Ak.x, Ak.y, Aj.x);
+                if (contribution < min_contribution) {
+                    min_contribution = contribution;
+                    evict = Aj;
+                }
+            }
+            if (evict == null) break; // only the endpoints and current constraints are left
+            this.low_points.remove(evict);
+            evicted_low.add(evict);
+            this.reportEviction(min_contribution);
+        }
+
+        Set<HighPoint> evicted_high = new HashSet<>();
+        while (this.high_points.size() > this.max_retained_points) {
+            HighPoint evict = null;
+            double min_contribution = Double.POSITIVE_INFINITY;
+            HighPoint Ai = this.high_points.first();
+            HighPoint Aj = this.high_points.higher(Ai);
+            for (HighPoint Ak = this.high_points.higher(Aj); Ak != null;
+                 Ai = Aj, Aj = Ak, Ak = this.high_points.higher(Ak)) {
+                if (Aj == this.current_low.highPoint || Aj == this.current_high.highPoint) continue;
+                double contribution = chord(Ai.x, Ai.y, Ak.x, Ak.y, Aj.x) - Aj.y;
+                if (contribution < min_contribution) {
+                    min_contribution = contribution;
+                    evict = Aj;
+                }
+            }
+            if (evict == null) break;
+            this.high_points.remove(evict);
+            evicted_high.add(evict);
+            this.reportEviction(min_contribution);
+        }
+
+        if (evicted_low.isEmpty() && evicted_high.isEmpty()) return;
+
+        Predicate<Line> evicted = new Predicate<Line>() {
+            @Override
+            public boolean test(Line line) {
+                return evicted_low.contains(line.lowPoint) || evicted_high.contains(line.highPoint);
+            }
+        };
+        this.low_constraints.removeIf(evicted);
+        this.high_constraints.removeIf(evicted);
+        this.removeSlopes(evicted_low, evicted_high);
+    }
+
+    /**
+     * @return The y coordinate at x of the line through (ix, iy) and (kx, ky).
+     */
+    private static double chord(double ix, double iy, double kx, double ky, double x) {
+        return iy + (ky - iy) * (x - ix) / (kx - ix);
+    }
+
+    private void reportEviction(double contribution) {
+        AlgorithmMetrics metrics = this.metrics();
+        if (metrics != null) metrics.evicted(Math.max(contribution, 0));
+    }
+
+    @Override
+    void pointsExpired(Set<LowPoint> low, Set<HighPoint> high) {
+        // expired points are older than every remaining point, so they are always the left key of their slopes
+        for (LowPoint lp : low)
+            this.low_slopes.removeAll(lp);
+        for (HighPoint hp : high)
+            this.high_slopes.removeAll(hp);
+    }
+
     @Override
     protected LowPoint addLowPoint(double Tb, double To) {
         LowPoint lp = super.addLowPoint(Tb, To);
@@ -0,0 +1,177 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.algorithm;
+
+/**
+ * Integer nanosecond front-end for a {@link TimeSyncAlgorithm}, for use with timestamps such as those of
+ * {@link System#nanoTime()} or nanoseconds since the epoch.
+ * <p>
+ * At epoch scale, converting nanosecond timestamps to double directly loses sub-microsecond precision (doubles only
+ * represent integers exactly up to 2^53 ns, i.e. about 104 days). Instead, timestamps are rebased on a local and a
+ * remote origin using exact long arithmetic and only the (small) differences are passed to the algorithm, so they are
+ * exact for the first 104 days after the origin and lose at most a few nanoseconds thereafter. Slopes and intercepts
+ * are computed from these differences. Translated timestamps are computed relative to the origins as well and only
+ * then added back to them as longs.
+ * <p>
+ * The wrapped algorithm works in nanoseconds relative to the origins, so minimum delays and windows have to be given
+ * in nanoseconds, and its estimates describe {@code (local - localOrigin) = drift * (remote - remoteOrigin) + offset}.
+ * Like the wrapped algorithm, this class is not thread-safe for ingestion, while queries can be made from any thread.
+ */
+public class NanosecondTimeSync {
+
+    private final TimeSyncAlgorithm algorithm;
+    private long local_origin;
+    private long remote_origin;
+    private volatile boolean rebased;
+
+    // scratch arrays for batches
+    private double[] To_rel;
+    private double[] Tb_rel;
+    private double[] Tr_rel;
+
+    /**
+     * Creates an instance which uses the To and Tb timestamps of the first data point as origins.
+     *
+     * @param algorithm The algorithm to feed, which must not have processed any data points yet.
+     */
+    public NanosecondTimeSync(TimeSyncAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        this.local_origin = 0;
+        this.remote_origin = 0;
+        this.rebased = false;
+        this.To_rel = new double[0];
+        this.Tb_rel = new double[0];
+        this.Tr_rel = new double[0];
+    }
+
+    /**
+     * @param algorithm    The algorithm to feed, which must not have processed any data points yet.
+     * @param localOrigin  Origin of the local timestamps (To, Tr), in nanoseconds.
+     * @param remoteOrigin Origin of the remote timestamps (Tb), in nanoseconds.
+     */
+    public NanosecondTimeSync(TimeSyncAlgorithm algorithm, long localOrigin, long remoteOrigin) {
+        this(algorithm);
+        this.local_origin = localOrigin;
+        this.remote_origin = remoteOrigin;
+        this.rebased = true;
+    }
+
+    private void rebase(long To, long Tb) {
+        if (this.rebased) return;
+        this.local_origin = To;
+        this.remote_origin = Tb;
+        this.rebased = true;
+    }
+
+    /**
+     * Adds a data point to the algorithm.
+     *
+     * @param To Outgoing beacon timestamp, in nanoseconds.
+     * @param Tb Reply timestamp on the remote peer, in nanoseconds.
+     * @param Tr Reply reception timestamp, in nanoseconds.
+     */
+    public void addDataPoint(long To, long Tb, long Tr) throws TimeSyncAlgorithmException {
+        this.rebase(To, Tb);
+        this.algorithm.addDataPoint(To - this.local_origin, Tb - this.remote_origin, Tr - this.local_origin);
+    }
+
+    /**
+     * Adds a batch of data points to the algorithm, see
+     * {@link TimeSyncAlgorithm#addDataPoints(double[], double[], double[])}.
+     *
+     * @param To Outgoing beacon timestamps, in nanoseconds.
+     * @param Tb Reply timestamps on the remote peer, in nanoseconds.
+     * @param Tr Reply reception timestamps, in nanoseconds.
+     */
+    public void addDataPoints(long[] To, long[] Tb, long[] Tr) throws TimeSyncAlgorithmException {
+        if (Tb.length != To.length || Tr.length != To.length)
+            throw new IllegalArgumentException("To, Tb and Tr must have the same length.");
+        if (To.length == 0) return;
+
+        if (this.To_rel.length != To.length) {
+            this.To_rel = new double[To.length];
+            this.Tb_rel = new double[To.length];
+            this.Tr_rel = new double[To.length];
+        }
+
+        this.rebase(To[0], Tb[0]);
+        for (int i = 0; i < To.length; ++i) {
+            this.To_rel[i] = To[i] - this.local_origin;
+            this.Tb_rel[i] = Tb[i] - this.remote_origin;
+            this.Tr_rel[i] = Tr[i] - this.local_origin;
+        }
+        this.algorithm.addDataPoints(this.To_rel, this.Tb_rel, this.Tr_rel);
+    }
+
+    /**
+     * Translates a remote timestamp into local time.
+     *
+     * @param remote Timestamp on the remote clock, in nanoseconds.
+     * @return The corresponding local timestamp, rounded to the nearest nanosecond.
+     */
+    public long toLocalNanos(long remote) {
+        boolean rebased = this.rebased; // read the origins after this
+        SyncEstimate estimate = this.algorithm.getEstimate();
+        if (!rebased) return remote;
+        return this.local_origin + Math.round(estimate.drift * (remote - this.remote_origin) + estimate.offset);
+    }
+
+    /**
+     * Translates a local timestamp into remote time.
+     *
+     * @param local Timestamp on the local clock, in nanoseconds.
+     * @return The corresponding remote timestamp, rounded to the nearest nanosecond.
+     */
+    public long toRemoteNanos(long local) {
+        boolean rebased = this.rebased;
+        SyncEstimate estimate = this.algorithm.getEstimate();
+        if (!rebased) return local;
+        return this.remote_origin + Math.round((local - this.local_origin - estimate.offset) / estimate.drift);
+    }
+
+    /**
+     * The true local time corresponding to the given remote timestamp lies within
+     * {@code toLocalNanos(remote) +/- localErrorNanos(remote)} (up to rounding).
+     *
+     * @param remote Timestamp on the remote clock, in nanoseconds.
+     * @return The error bound of {@link #toLocalNanos(long)}, rounded up to the next nanosecond.
+     */
+    public long localErrorNanos(long remote) {
+        boolean rebased = this.rebased;
+        SyncEstimate estimate = this.algorithm.getEstimate();
+        if (!rebased) return 0;
+        return (long) Math.ceil(estimate.driftError * Math.abs((double) (remote - this.remote_origin)) +
+                estimate.offsetError);
+    }
+
+    public long getLocalOrigin() {
+        return this.local_origin;
+    }
+
+    public long getRemoteOrigin() {
+        return this.remote_origin;
+    }
+
+    /**
+     * @return The wrapped algorithm, whose estimates are relative to the origins.
+     */
+    public TimeSyncAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+}
@@ -0,0 +1,770 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.algorithm;
+
+import com.github.molguin92.minisync.constraint.LineMath;
+import com.github.molguin92.minisync.filter.SampleFilter;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Allocation-free implementation of the convex-hull based MiniSync algorithm (see {@link HullMiniSyncAlgorithm}).
+ * <p>
+ * Points are stored in preallocated primitive arrays (struct-of-arrays layout) and constraints are computed on the
+ * fly from the retained points instead of being stored as {@link com.github.molguin92.minisync.constraint.Line}
+ * objects. Arrays only grow when the number of retained points exceeds the current capacity, so once the hulls have
+ * reached their steady-state size {@link #addDataPoint(double, double, double)} only allocates when it publishes a new
+ * {@link SyncEstimate}, i.e. when the estimates change.
+ * <p>
+ * Estimates are the same as those of {@link HullMiniSyncAlgorithm}.
+ */
+public class PrimitiveMiniSyncAlgorithm implements TimeSyncAlgorithm {
+
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private final Points low_points;
+    private final Points high_points;
+
+    // constraints through the points of the latest sample
+    private double[] new_A;
+    private double[] new_B;
+    private int[] new_low; // index of the low point of each new constraint
+    private int[] new_high; // index of the high point of each new constraint
+    private int new_count;
+
+    // current constraints and their endpoints
+    private double low_A;
+    private double low_B;
+    private double low_lx, low_ly, low_hx, low_hy;
+    private double high_A;
+    private double high_B;
+    private double high_lx, high_ly, high_hx, high_hy;
+    private boolean constraints_changed;
+    private boolean full_scan; // the current constraints expired, compare all pairs of constraints again
+    private boolean incremental; // see setIncrementalSelection(boolean)
+    private boolean current_tightest; // see selectTightest()
+
+    private final EstimateReference estimate;
+
+    private double diff_factor;
+    private int processed_datapoints;
+    private double minimum_local_delay;
+    private double minimum_remote_delay;
+
+    private double time_window;
+    private double[] sample_window; // Tb of the most recent data points
+    private int sample_window_count;
+
+    private final List<SampleFilter> filters;
+    private AlgorithmMetrics metrics; // null unless enabled
+
+    public PrimitiveMiniSyncAlgorithm() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Initial number of low and high points that can be retained before the backing arrays need to
+     *                 grow.
+     */
+    public PrimitiveMiniSyncAlgorithm(int capacity) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("Capacity must be at least 2.");
+
+        this.low_points = new Points(capacity, true);
+        this.high_points = new Points(capacity, false);
+        this.new_A = new double[2 * capacity];
+        this.new_B = new double[2 * capacity];
+        this.new_low = new int[2 * capacity];
+        this.new_high = new int[2 * capacity];
+
+        this.estimate = new EstimateReference(SyncEstimate.INITIAL);
+
+        this.diff_factor = Double.MAX_VALUE;
+        this.incremental = true;
+        this.processed_datapoints = 0;
+        this.minimum_local_delay = 0.0d;
+        this.minimum_remote_delay = 0.0d;
+
+        this.time_window = Double.POSITIVE_INFINITY;
+        this.sample_window = null;
+        this.sample_window_count = 0;
+
+        this.filters = new ArrayList<>();
+        this.metrics = null;
+    }
+
+    @Override
+    public void addDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        AlgorithmMetrics metrics = this.metrics;
+        if (metrics == null) {
+            this.ingestDataPoint(To, Tb, Tr);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            this.ingestDataPoint(To, Tb, Tr);
+        } catch (TimeSyncAlgorithmException e) {
+            metrics.exception();
+            throw e;
+        } finally {
+            metrics.latency(System.nanoTime() - start);
+        }
+    }
+
+    private void ingestDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        if (!this.acceptDataPoint(To, Tb, Tr, this.estimate.get())) return;
+        Tr = this.insertDataPoint(To, Tb, Tr);
+
+        if (this.processed_datapoints > 1) {
+            // estimates only change with the constraints, which keeps steady-state ingestion allocation-free
+            if (this.updateConstraints())
+                this.publishEstimates(this.processed_datapoints, Tr);
+            this.checkDrift();
+        }
+    }
+
+    @Override
+    public void addDataPoints(double[] To, double[] Tb, double[] Tr, int offset, int length)
+            throws TimeSyncAlgorithmException {
+        if (offset < 0 || length < 0 || length > Math.min(To.length, Math.min(Tb.length, Tr.length)) - offset)
+            throw new IndexOutOfBoundsException(
+                    String.format("Range of %d data points at %d is out of bounds.", length, offset));
+
+        try {
+            this.ingestDataPoints(To, Tb, Tr, offset, length);
+        } catch (TimeSyncAlgorithmException e) {
+            if (this.metrics != null) this.metrics.exception();
+            throw e;
+        }
+    }
+
+    private void ingestDataPoints(double[] To, double[] Tb, double[] Tr, int offset, int count)
+            throws TimeSyncAlgorithmException {
+
+        // as in BaseAlgorithm, constraints are updated per data point and estimates are published once, while filters
+        // see the estimates as they would have been published after every data point
+        boolean filtered = !this.filters.isEmpty();
+        SyncEstimate estimate = this.estimate.get();
+        boolean updated = false;
+        int changed_at = 0;
+        double changed_Tr = 0;
+        for (int i = offset; i < offset + count; ++i) {
+            if (!this.acceptDataPoint(To[i], Tb[i], Tr[i], estimate)) continue;
+            double adjusted_Tr = this.insertDataPoint(To[i], Tb[i], Tr[i]);
+            if (this.processed_datapoints <= 1) continue;
+
+            updated = true;
+            if (this.updateConstraints()) {
+                changed_at = this.processed_datapoints;
+                changed_Tr = adjusted_Tr;
+                if (filtered) estimate = this.nextEstimate(estimate, changed_at, changed_Tr);
+            }
+
+            if (this.currentDrift() < 0) break; // checkDrift() throws
+        }
+
+        if (filtered) {
+            if (estimate != this.estimate.get()) this.estimate.set(estimate);
+        } else if (changed_at > 0) {
+            this.publishEstimates(changed_at, changed_Tr);
+        }
+        if (updated)
+            this.checkDrift();
+    }
+
+    /**
+     * Passes a data point through the filters.
+     *
+     * @param estimate The estimates derived from all previous data points.
+     * @return true if every filter accepted the data point.
+     */
+    private boolean acceptDataPoint(double To, double Tb, double Tr, SyncEstimate estimate) {
+        for (int i = 0; i < this.filters.size(); ++i) {
+            if (!this.filters.get(i).accept(To + this.minimum_local_delay,
+                    Tb - this.minimum_remote_delay,
+                    Tr - this.minimum_local_delay,
+                    estimate)) {
+                if (this.metrics != null) this.metrics.rejected();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adjusts the delays of a data point and adds its low and high points to the algorithm.
+     *
+     * @return The adjusted reply reception timestamp.
+     */
+    private double insertDataPoint(double To, double Tb, double Tr) {
+        // adjust delays
+        To += this.minimum_local_delay;
+        Tb -= this.minimum_remote_delay;
+        Tr -= this.minimum_local_delay;
+
+        this.slideWindow(Tb);
+
+        this.low_points.add(Tb, To);
+        this.high_points.add(Tb, Tr);
+        ++this.processed_datapoints;
+        if (this.metrics != null) this.metrics.accepted();
+        return Tr;
+    }
+
+    /**
+     * Selects the best pair of constraints and discards the points which are no longer needed.
+     *
+     * @return true if the current constraints changed.
+     */
+    private boolean updateConstraints() {
+        int retained = this.low_points.size + this.high_points.size;
+        this.collectNewConstraints();
+        this.selectConstraints();
+
+        // discard points popped off the hulls, except for those in the current constraints
+        if (this.low_points.popped > 0 || this.constraints_changed)
+            this.low_points.discard(this.low_lx, this.low_ly, this.high_lx, this.high_ly);
+        if (this.high_points.popped > 0 || this.constraints_changed)
+            this.high_points.discard(this.low_hx, this.low_hy, this.high_hx, this.high_hy);
+
+        if (this.metrics != null) {
+            // constraints are not stored
+            this.metrics.update(this.low_points.size, this.high_points.size, -1, -1,
+                    retained - this.low_points.size - this.high_points.size, this.constraints_changed);
+        }
+        return this.constraints_changed;
+    }
+
+    /**
+     * Discards the points which fall out of the configured window once a data point with the given Tb is added.
+     */
+    private void slideWindow(double Tb) {
+        double cutoff = Tb - this.time_window;
+        if (this.sample_window != null) {
+            int i = this.sample_window_count % this.sample_window.length;
+            this.sample_window[i] = Tb;
+            ++this.sample_window_count;
+            if (this.sample_window_count >= this.sample_window.length)
+                cutoff = Math.max(cutoff, this.sample_window[(i + 1) % this.sample_window.length]);
+        }
+
+        boolean expired = this.low_points.expire(cutoff);
+        expired = this.high_points.expire(cutoff) || expired;
+
+        if (expired && (this.low_lx < cutoff || this.low_hx < cutoff || this.high_lx < cutoff || this.high_hx < cutoff)) {
+            // re-derive the best constraints from the points still in the window
+            this.setLowConstraint(Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            this.setHighConstraint(Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            this.diff_factor = Double.MAX_VALUE;
+            this.full_scan = true;
+            this.current_tightest = false;
+        }
+    }
+
+    private double currentDrift() {
+        return (this.low_A + this.high_A) / 2;
+    }
+
+    private void publishEstimates(int datapoints, double Tr) {
+        SyncEstimate previous = this.estimate.get();
+        SyncEstimate estimate = this.nextEstimate(previous, datapoints, Tr);
+        if (estimate != previous) this.estimate.set(estimate);
+    }
+
+    /**
+     * Derives the estimates from the current constraints, returning previous if they did not change.
+     */
+    private SyncEstimate nextEstimate(SyncEstimate previous, int datapoints, double Tr) {
+        double drift = this.currentDrift();
+        double offset = (this.low_B + this.high_B) / 2;
+        double drift_error = (this.low_A - this.high_A) / 2;
+        double offset_error = (this.high_B - this.low_B) / 2;
+
+        if (previous.sameAs(drift, drift_error, offset, offset_error)) return previous;
+        return new SyncEstimate(drift, drift_error, offset, offset_error, datapoints, Tr);
+    }
+
+    private void checkDrift() throws TimeSyncAlgorithmException {
+        double drift = this.currentDrift();
+        if (drift < 0) // NaN while there are no current constraints
+            throw new TimeSyncAlgorithmException(
+                    "Drift must be >= 0 for monotonically increasing clocks (current drift value: %f)",
+                    drift);
+    }
+
+    /**
+     * Computes the constraints through the low and high points of the latest sample, or all constraints if the
+     * previous ones expired.
+     */
+    private void collectNewConstraints() {
+        Points lps = this.low_points;
+        Points hps = this.high_points;
+        int new_lp = lps.size - 1;
+        int new_hp = hps.size - 1;
+
+        boolean full_scan = this.full_scan || !this.incremental;
+        int count = full_scan ? lps.size * hps.size : lps.size + hps.size;
+        if (this.new_A.length < count) {
+            int length = 2 * count;
+            this.new_A = new double[length];
+            this.new_B = new double[length];
+            this.new_low = new int[length];
+            this.new_high = new int[length];
+        }
+
+        this.new_count = 0;
+        if (full_scan) {
+            this.full_scan = false;
+            for (int lp = 0; lp < lps.size; ++lp)
+                for (int hp = 0; hp < hps.size; ++hp)
+                    this.addNewConstraint(lp, hp);
+            return;
+        }
+
+        for (int hp = 0; hp < hps.size; ++hp)
+            this.addNewConstraint(new_lp, hp);
+        for (int lp = 0; lp < new_lp; ++lp)
+            this.addNewConstraint(lp, new_hp);
+    }
+
+    private void addNewConstraint(int lp, int hp) {
+        double lx = this.low_points.x[lp];
+        double ly = this.low_points.y[lp];
+        double hx = this.high_points.x[hp];
+        double hy = this.high_points.y[hp];
+        if (lx == hx) return;
+
+        double A = (ly - hy) / (lx - hx);
+        this.new_A[this.new_count] = A;
+        this.new_B[this.new_count] = LineMath.intercept(A, lx, ly);
+        this.new_low[this.new_count] = lp;
+        this.new_high[this.new_count] = hp;
+        ++this.new_count;
+    }
+
+    /**
+     * Selects the tightest pair among the current and the new constraints if the current constraints are the tightest
+     * of all (see {@link BaseAlgorithm}), which costs O(n) in the number n of retained points. Otherwise every
+     * constraint is compared against the new constraints of the opposite type, at O(n^3): as in {@link BaseAlgorithm},
+     * pairs of older constraints never need to be evaluated again since diff_factor only decreases.
+     */
+    private void selectConstraints() {
+        Points lps = this.low_points;
+        Points hps = this.high_points;
+        this.constraints_changed = false;
+        if (this.incremental && (this.current_tightest || Double.isNaN(this.low_A)) && this.selectTightest()) return;
+
+        for (int lp = 0; lp < lps.size; ++lp) {
+            double lx = lps.x[lp];
+            double ly = lps.y[lp];
+            for (int hp = 0; hp < hps.size; ++hp) {
+                double hx = hps.x[hp];
+                if (lx == hx) continue;
+
+                double hy = hps.y[hp];
+                double A = (ly - hy) / (lx - hx);
+                double B = LineMath.intercept(A, lx, ly);
+                boolean low_to_high = lx < hx;
+
+                for (int i = 0; i < this.new_count; ++i) {
+                    double nlx = lps.x[this.new_low[i]];
+                    double nhx = hps.x[this.new_high[i]];
+                    if ((nlx < nhx) == low_to_high) continue; // same type
+
+                    double tmp_diff;
+                    if (low_to_high) tmp_diff = (A - this.new_A[i]) * (this.new_B[i] - B);
+                    else tmp_diff = (this.new_A[i] - A) * (B - this.new_B[i]);
+
+                    if (tmp_diff < this.diff_factor) {
+                        this.diff_factor = tmp_diff;
+                        this.constraints_changed = true;
+
+                        double nly = lps.y[this.new_low[i]];
+                        double nhy = hps.y[this.new_high[i]];
+                        if (low_to_high) {
+                            this.setLowConstraint(A, B, lx, ly, hx, hy);
+                            this.setHighConstraint(this.new_A[i], this.new_B[i], nlx, nly, nhx, nhy);
+                        } else {
+                            this.setLowConstraint(this.new_A[i], this.new_B[i], nlx, nly, nhx, nhy);
+                            this.setHighConstraint(A, B, lx, ly, hx, hy);
+                        }
+                    }
+                }
+            }
+        }
+        this.current_tightest = this.incremental && this.isTightest();
+    }
+
+    /**
+     * Selects the tightest pair among the current (unless expired) and the new constraints, if there is one, as
+     * BaseAlgorithm.selectTightest() does.
+     *
+     * @return false if there is no tightest pair, in which case nothing changed.
+     */
+    private boolean selectTightest() {
+        Points lps = this.low_points;
+        Points hps = this.high_points;
+        boolean has_current = !Double.isNaN(this.low_A);
+
+        // index of the tightest new constraint of each type, -1 for the current one
+        int low = -1;
+        int high = -1;
+        double low_A = this.low_A, low_B = this.low_B;
+        double high_A = this.high_A, high_B = this.high_B;
+        for (int i = 0; i < this.new_count; ++i) {
+            double A = this.new_A[i];
+            double B = this.new_B[i];
+            if (lps.x[this.new_low[i]] < hps.x[this.new_high[i]]) {
+                if ((low == -1 && !has_current) || A < low_A || (A == low_A && B > low_B)) {
+                    low = i;
+                    low_A = A;
+                    low_B = B;
+                }
+            } else if ((high == -1 && !has_current) || A > high_A || (A == high_A && B < high_B)) {
+                high = i;
+                high_A = A;
+                high_B = B;
+            }
+        }
+        if ((!has_current && (low == -1 || high == -1)) || low_A < high_A || high_B < low_B) return false;
+
+        if (has_current && (this.low_A < low_A || this.low_B > low_B || this.high_A > high_A || this.high_B < high_B))
+            return false;
+        for (int i = 0; i < this.new_count; ++i) {
+            double A = this.new_A[i];
+            double B = this.new_B[i];
+            if (lps.x[this.new_low[i]] < hps.x[this.new_high[i]]) {
+                if (A < low_A || B > low_B) return false;
+            } else if (A > high_A || B < high_B) {
+                return false;
+            }
+        }
+
+        // same arithmetic as comparing the pair in selectConstraints()
+        double tmp_diff = (low_A - high_A) * (high_B - low_B);
+        if (tmp_diff < this.diff_factor) {
+            this.diff_factor = tmp_diff;
+            this.constraints_changed = true;
+            if (low != -1)
+                this.setLowConstraint(low_A, low_B, lps.x[this.new_low[low]], lps.y[this.new_low[low]],
+                        hps.x[this.new_high[low]], hps.y[this.new_high[low]]);
+            if (high != -1)
+                this.setHighConstraint(high_A, high_B, lps.x[this.new_low[high]], lps.y[this.new_low[high]],
+                        hps.x[this.new_high[high]], hps.y[this.new_high[high]]);
+        }
+        this.current_tightest = this.constraints_changed || (low == -1 && high == -1);
+        return true;
+    }
+
+    /**
+     * @return true if the current constraints are the tightest of all constraints through the retained points.
+     */
+    private boolean isTightest() {
+        if (Double.isNaN(this.low_A) || this.low_A < this.high_A || this.high_B < this.low_B) return false;
+
+        Points lps = this.low_points;
+        Points hps = this.high_points;
+        for (int lp = 0; lp < lps.size; ++lp) {
+            double lx = lps.x[lp];
+            double ly = lps.y[lp];
+            for (int hp = 0; hp < hps.size; ++hp) {
+                double hx = hps.x[hp];
+                if (lx == hx) continue;
+
+                // same arithmetic as addNewConstraint()
+                double A = (ly - hps.y[hp]) / (lx - hx);
+                double B = LineMath.intercept(A, lx, ly);
+                if (lx < hx) {
+                    if (A < this.low_A || B > this.low_B) return false;
+                } else if (A > this.high_A || B < this.high_B) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void setLowConstraint(double A, double B, double lx, double ly, double hx, double hy) {
+        this.low_A = A;
+        this.low_B = B;
+        this.low_lx = lx;
+        this.low_ly = ly;
+        this.low_hx = hx;
+        this.low_hy = hy;
+    }
+
+    private void setHighConstraint(double A, double B, double lx, double ly, double hx, double hy) {
+        this.high_A = A;
+        this.high_B = B;
+        this.high_lx = lx;
+        this.high_ly = ly;
+        this.high_hx = hx;
+        this.high_hy = hy;
+    }
+
+    /**
+     * Retained points of one type, ordered by x, together with the indices of those on the hull.
+     */
+    private static final class Points {
+        private final boolean upper; // keep the upper (low points) or the lower (high points) hull
+
+        double[] x;
+        double[] y;
+        boolean[] on_hull;
+        int[] hull;
+        int size;
+        int hull_size;
+        int popped; // points popped off the hull since the last discard
+
+        Points(int capacity, boolean upper) {
+            this.upper = upper;
+            this.x = new double[capacity];
+            this.y = new double[capacity];
+            this.on_hull = new boolean[capacity];
+            this.hull = new int[capacity];
+        }
+
+        void add(double px, double py) {
+            if (this.size == this.x.length) this.grow();
+
+            // monotone chain, see HullMiniSyncAlgorithm
+            while (this.hull_size >= 2) {
+                int i = this.hull[this.hull_size - 2];
+                int j = this.hull[this.hull_size - 1];
+                double cross = (this.x[j] - this.x[i]) * (py - this.y[i]) - (this.y[j] - this.y[i]) * (px - this.x[i]);
+                if (this.upper ? cross < 0 : cross > 0) break;
+
+                this.on_hull[j] = false;
+                --this.hull_size;
+                ++this.popped;
+            }
+
+            this.x[this.size] = px;
+            this.y[this.size] = py;
+            this.on_hull[this.size] = true;
+            this.hull[this.hull_size++] = this.size;
+            ++this.size;
+        }
+
+        /**
+         * Discards all points with x &lt; cutoff. Since points are ordered by x, these are a prefix of the arrays.
+         *
+         * @return true if any point was discarded.
+         */
+        boolean expire(double cutoff) {
+            int expired = 0;
+            while (expired < this.size && this.x[expired] < cutoff) ++expired;
+            if (expired == 0) return false;
+
+            int n = this.size - expired;
+            System.arraycopy(this.x, expired, this.x, 0, n);
+            System.arraycopy(this.y, expired, this.y, 0, n);
+            System.arraycopy(this.on_hull, expired, this.on_hull, 0, n);
+
+            // the remaining hull vertices are still a convex chain; points popped by expired points are lost
+            int h = 0;
+            for (int i = 0; i < n; ++i)
+                if (this.on_hull[i]) this.hull[h++] = i;
+            this.size = n;
+            this.hull_size = h;
+            return true;
+        }
+
+        /**
+         * Discards all points which are not on the hull, except for the points at (ax, ay) and (bx, by).
+         */
+        void discard(double ax, double ay, double bx, double by) {
+            int n = 0;
+            int h = 0;
+            for (int i = 0; i < this.size; ++i) {
+                double px = this.x[i];
+                double py = this.y[i];
+                if (!this.on_hull[i] && !(px == ax && py == ay) && !(px == bx && py == by)) continue;
+
+                this.x[n] = px;
+                this.y[n] = py;
+                this.on_hull[n] = this.on_hull[i];
+                if (this.on_hull[n]) this.hull[h++] = n;
+                ++n;
+            }
+            this.size = n;
+            this.hull_size = h;
+            this.popped = 0;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putInt(this.size);
+            for (int i = 0; i < this.size; ++i)
+                buffer.putDouble(this.x[i]).putDouble(this.y[i]);
+        }
+
+        void read(ByteBuffer buffer) {
+            int count = Checkpoint.readCount(buffer);
+            for (int i = 0; i < count; ++i)
+                this.add(buffer.getDouble(), buffer.getDouble());
+        }
+
+        private void grow() {
+            int capacity = 2 * this.x.length;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.on_hull = Arrays.copyOf(this.on_hull, capacity);
+            this.hull = Arrays.copyOf(this.hull, capacity);
+        }
+    }
+
+    @Override
+    public double getDrift() {
+        return this.estimate.get().drift;
+    }
+
+    @Override
+    public double getDriftError() {
+        return this.estimate.get().driftError;
+    }
+
+    @Override
+    public double getOffset() {
+        return this.estimate.get().offset;
+    }
+
+    @Override
+    public double getOffsetError() {
+        return this.estimate.get().offsetError;
+    }
+
+    @Override
+    public SyncEstimate getEstimate() {
+        return this.estimate.get();
+    }
+
+    @Override
+    public int numDataPoints() {
+        return this.processed_datapoints;
+    }
+
+    @Override
+    public void setMinimumDelay(double d) {
+        this.minimum_remote_delay = d;
+        this.minimum_local_delay = d;
+    }
+
+    @Override
+    public void setMinimumLocalDelay(double d) {
+        this.minimum_local_delay = d;
+    }
+
+    @Override
+    public void setMinimumRemoteDelay(double d) {
+        this.minimum_remote_delay = d;
+    }
+
+    @Override
+    public void setTimeWindow(double horizon) {
+        if (!(horizon > 0))
+            throw new IllegalArgumentException("Window horizon must be > 0.");
+        this.time_window = horizon;
+    }
+
+    @Override
+    public void setSampleWindow(int samples) {
+        if (samples < 0 || samples == 1)
+            throw new IllegalArgumentException("Window size must be 0 or at least 2 data points.");
+        this.sample_window = samples == 0 ? null : new double[samples];
+        this.sample_window_count = 0;
+    }
+
+    @Override
+    public void addFilter(SampleFilter filter) {
+        this.filters.add(filter);
+    }
+
+    /**
+     * Selects whether the constraints through each new data point are only compared against the current ones where
+     * possible, and otherwise against all opposite constraints (the default), or whether every pair of constraints is
+     * compared after each data point. The estimates are the same either way, except for ties between pairs; comparing
+     * every pair is only useful as a reference.
+     *
+     * @param incremental false to compare every pair of constraints after each data point.
+     */
+    public void setIncrementalSelection(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    @Override
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int checkpointSize() {
+        return Checkpoint.size(this.low_points.size, this.high_points.size,
+                Checkpoint.windowEntries(this.sample_window, this.sample_window_count));
+    }
+
+    @Override
+    public void checkpoint(ByteBuffer buffer) {
+        if (buffer.remaining() < this.checkpointSize()) throw new BufferOverflowException();
+
+        Checkpoint.writeHeader(buffer, this.processed_datapoints, this.diff_factor, this.estimate.get());
+        buffer.putDouble(this.low_lx).putDouble(this.low_ly).putDouble(this.low_hx).putDouble(this.low_hy);
+        buffer.putDouble(this.high_lx).putDouble(this.high_ly).putDouble(this.high_hx).putDouble(this.high_hy);
+        this.low_points.write(buffer);
+        this.high_points.write(buffer);
+        Checkpoint.writeWindow(buffer, this.sample_window, this.sample_window_count);
+    }
+
+    @Override
+    public void restore(ByteBuffer buffer) {
+        if (this.processed_datapoints > 0)
+            throw new IllegalStateException("Checkpoints can only be restored into a new algorithm instance.");
+
+        byte version = Checkpoint.readHeader(buffer);
+        int processed_datapoints = buffer.getInt();
+        double diff_factor = buffer.getDouble();
+        SyncEstimate estimate = Checkpoint.readEstimate(buffer);
+        double low_lx = buffer.getDouble(), low_ly = buffer.getDouble();
+        double low_hx = buffer.getDouble(), low_hy = buffer.getDouble();
+        double high_lx = buffer.getDouble(), high_ly = buffer.getDouble();
+        double high_hx = buffer.getDouble(), high_hy = buffer.getDouble();
+
+        // re-adding the points rebuilds the hulls; points in the current constraints are popped again and kept
+        this.low_points.read(buffer);
+        this.high_points.read(buffer);
+        this.sample_window_count = Checkpoint.readWindow(buffer, this.sample_window, version);
+
+        // same arithmetic as addNewConstraint()
+        double low_A = (low_ly - low_hy) / (low_lx - low_hx);
+        double high_A = (high_ly - high_hy) / (high_lx - high_hx);
+        this.setLowConstraint(low_A, LineMath.intercept(low_A, low_lx, low_ly),
+                low_lx, low_ly, low_hx, low_hy);
+        this.setHighConstraint(high_A, LineMath.intercept(high_A, high_lx, high_ly),
+                high_lx, high_ly, high_hx, high_hy);
+        this.diff_factor = diff_factor;
+        this.current_tightest = false;
+        this.processed_datapoints = processed_datapoints;
+        this.estimate.set(estimate);
+    }
+}
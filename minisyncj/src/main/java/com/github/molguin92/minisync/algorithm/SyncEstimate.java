@@ -0,0 +1,228 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.algorithm;
+
+import com.github.molguin92.minisync.constraint.LineMath;
+
+/**
+ * Immutable snapshot of the estimates of a {@link TimeSyncAlgorithm}.
+ * <p>
+ * Algorithms publish a new snapshot through a single volatile (or, on Java 9+, release) write whenever their estimates
+ * change, so a snapshot obtained through {@link TimeSyncAlgorithm#getEstimate()} is always internally consistent and
+ * can be read from any thread without locking.
+ * <p>
+ * The estimates describe the relationship {@code local = drift * remote + offset} between the local clock (To, Tr) and
+ * the remote clock (Tb). Since the true drift and offset lie within {@code drift +/- driftError} and
+ * {@code offset +/- offsetError}, translated timestamps can be given with guaranteed bounds.
+ */
+public final class SyncEstimate {
+
+    /**
+     * Estimate of an algorithm which has not processed enough data points yet.
+     */
+    public static final SyncEstimate INITIAL = new SyncEstimate(1.0d, 0.0d, 0.0d, 0.0d, 0, 0.0d);
+
+    public final double drift;
+    public final double driftError;
+    public final double offset;
+    public final double offsetError;
+
+    /**
+     * Number of data points processed by the algorithm when this estimate was computed.
+     */
+    public final int dataPoints;
+
+    /**
+     * Reply reception timestamp (Tr) of the data point which produced this estimate.
+     */
+    public final double timestamp;
+
+    public SyncEstimate(double drift, double driftError, double offset, double offsetError,
+                        int dataPoints, double timestamp) {
+        this.drift = drift;
+        this.driftError = driftError;
+        this.offset = offset;
+        this.offsetError = offsetError;
+        this.dataPoints = dataPoints;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Translates a remote timestamp into local time.
+     *
+     * @param remote Timestamp on the remote clock.
+     * @return The corresponding local timestamp and its bounds.
+     */
+    public BoundedTime toLocal(double remote) {
+        double local = LineMath.evaluate(this.drift, remote, this.offset);
+        double error = LineMath.evaluate(this.driftError, Math.abs(remote), this.offsetError);
+        return new BoundedTime(local, local - error, local + error);
+    }
+
+    /**
+     * Translates a local timestamp into remote time.
+     * If the lower bound of the drift is not positive, the bounds are infinite.
+     *
+     * @param local Timestamp on the local clock.
+     * @return The corresponding remote timestamp and its bounds.
+     */
+    public BoundedTime toRemote(double local) {
+        double remote = (local - this.offset) / this.drift;
+        double min_drift = this.drift - this.driftError;
+        if (min_drift <= 0)
+            return new BoundedTime(remote, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+        double max_drift = this.drift + this.driftError;
+        double min_diff = local - (this.offset + this.offsetError);
+        double max_diff = local - (this.offset - this.offsetError);
+        return new BoundedTime(remote,
+                Math.min(min_diff / min_drift, min_diff / max_drift),
+                Math.max(max_diff / min_drift, max_diff / max_drift));
+    }
+
+    private static void checkLengths(int in, int out) {
+        if (out < in)
+            throw new IllegalArgumentException(
+                    String.format("Output array too short (%d elements for %d inputs).", out, in));
+    }
+
+    /**
+     * Translates remote timestamps into local time, without bounds.
+     *
+     * @param remote Timestamps on the remote clock.
+     * @param local  Output array for the local timestamps, at least as long as remote.
+     */
+    public void toLocal(double[] remote, double[] local) {
+        checkLengths(remote.length, local.length);
+        double drift = this.drift;
+        double offset = this.offset;
+        for (int i = 0; i < remote.length; ++i)
+            local[i] = LineMath.evaluate(drift, remote[i], offset);
+    }
+
+    /**
+     * Translates remote timestamps into local time, rounding to the nearest integer.
+     *
+     * @param remote Timestamps on the remote clock.
+     * @param local  Output array for the local timestamps, at least as long as remote.
+     */
+    public void toLocal(long[] remote, long[] local) {
+        checkLengths(remote.length, local.length);
+        double drift = this.drift;
+        double offset = this.offset;
+        for (int i = 0; i < remote.length; ++i)
+            local[i] = Math.round(LineMath.evaluate(drift, remote[i], offset));
+    }
+
+    /**
+     * Computes the bounds of the local times corresponding to the given remote timestamps.
+     *
+     * @param remote Timestamps on the remote clock.
+     * @param min    Output array for the lower bounds, at least as long as remote.
+     * @param max    Output array for the upper bounds, at least as long as remote.
+     */
+    public void toLocalBounds(double[] remote, double[] min, double[] max) {
+        checkLengths(remote.length, Math.min(min.length, max.length));
+        double drift = this.drift;
+        double offset = this.offset;
+        double drift_error = this.driftError;
+        double offset_error = this.offsetError;
+        for (int i = 0; i < remote.length; ++i) {
+            double x = remote[i];
+            double local = LineMath.evaluate(drift, x, offset);
+            double error = LineMath.evaluate(drift_error, Math.abs(x), offset_error);
+            min[i] = local - error;
+            max[i] = local + error;
+        }
+    }
+
+    /**
+     * Translates local timestamps into remote time, without bounds.
+     *
+     * @param local  Timestamps on the local clock.
+     * @param remote Output array for the remote timestamps, at least as long as local.
+     */
+    public void toRemote(double[] local, double[] remote) {
+        checkLengths(local.length, remote.length);
+        double drift = this.drift;
+        double offset = this.offset;
+        for (int i = 0; i < local.length; ++i)
+            remote[i] = (local[i] - offset) / drift;
+    }
+
+    /**
+     * Translates local timestamps into remote time, rounding to the nearest integer.
+     *
+     * @param local  Timestamps on the local clock.
+     * @param remote Output array for the remote timestamps, at least as long as local.
+     */
+    public void toRemote(long[] local, long[] remote) {
+        checkLengths(local.length, remote.length);
+        double drift = this.drift;
+        double offset = this.offset;
+        for (int i = 0; i < local.length; ++i)
+            remote[i] = Math.round((local[i] - offset) / drift);
+    }
+
+    /**
+     * Computes the bounds of the remote times corresponding to the given local timestamps.
+     * If the lower bound of the drift is not positive, the bounds are infinite.
+     *
+     * @param local Timestamps on the local clock.
+     * @param min   Output array for the lower bounds, at least as long as local.
+     * @param max   Output array for the upper bounds, at least as long as local.
+     */
+    public void toRemoteBounds(double[] local, double[] min, double[] max) {
+        checkLengths(local.length, Math.min(min.length, max.length));
+        double min_drift = this.drift - this.driftError;
+        double max_drift = this.drift + this.driftError;
+        if (min_drift <= 0) {
+            for (int i = 0; i < local.length; ++i) {
+                min[i] = Double.NEGATIVE_INFINITY;
+                max[i] = Double.POSITIVE_INFINITY;
+            }
+            return;
+        }
+
+        double min_offset = this.offset - this.offsetError;
+        double max_offset = this.offset + this.offsetError;
+        for (int i = 0; i < local.length; ++i) {
+            double min_diff = local[i] - max_offset;
+            double max_diff = local[i] - min_offset;
+            min[i] = Math.min(min_diff / min_drift, min_diff / max_drift);
+            max[i] = Math.max(max_diff / min_drift, max_diff / max_drift);
+        }
+    }
+
+    /**
+     * @return true if drift, offset and their errors are the same as in the given values.
+     */
+    boolean sameAs(double drift, double driftError, double offset, double offsetError) {
+        return this.drift == drift && this.driftError == driftError &&
+                this.offset == offset && this.offsetError == offsetError;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncEstimate{drift=" + this.drift + " +/- " + this.driftError +
+                ", offset=" + this.offset + " +/- " + this.offsetError +
+                ", dataPoints=" + this.dataPoints + ", timestamp=" + this.timestamp + '}';
+    }
+}
@@ -0,0 +1,219 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.algorithm;
+
+import com.github.molguin92.minisync.constraint.LineMath;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Remote clock for event stamping, driven by the local clock and the estimates of a {@link TimeSyncAlgorithm}.
+ * <p>
+ * The estimates are converted once, whenever they change, into an immutable set of coefficients such that the remote
+ * time and its bounds are linear functions of the local time. Reading the clock therefore takes one read of the local
+ * clock, one volatile read of the current estimate, and a multiply-add per returned value (see {@link LineMath}),
+ * without allocating. The clock can be read from any number of threads while the algorithm keeps
+ * processing data points.
+ * <p>
+ * The local timestamps (To, Tr) given to the algorithm have to be readings of the same local clock, which by default
+ * is {@link System#nanoTime()}, minus a local origin (see {@link #getLocalOrigin()}). Clock readings are rebased to the
+ * origin using exact long arithmetic before they are converted to double: readings such as those of
+ * {@link System#nanoTime()} are arbitrary longs, which lose nanosecond precision as doubles beyond 2^53, whereas the
+ * differences to the origin stay exact for the first 104 days.
+ */
+public class SyncedClock {
+
+    private static final LongSupplier NANO_TIME = new LongSupplier() {
+        @Override
+        public long getAsLong() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Coefficients of remote = a * local + b for the estimate and its lower and upper bounds.
+     */
+    private static final class Coefficients {
+        final SyncEstimate estimate;
+        final double a;
+        final double b;
+        // the lower and upper bounds are the minimum and maximum of two lines each, over the extremal drifts
+        final double min_a1;
+        final double min_b1;
+        final double min_a2;
+        final double min_b2;
+        final double max_a1;
+        final double max_b1;
+        final double max_a2;
+        final double max_b2;
+
+        Coefficients(SyncEstimate estimate) {
+            this.estimate = estimate;
+            this.a = 1.0d / estimate.drift;
+            this.b = -estimate.offset / estimate.drift;
+
+            double min_drift = estimate.drift - estimate.driftError;
+            double max_drift = estimate.drift + estimate.driftError;
+            double max_offset = estimate.offset + estimate.offsetError;
+            double min_offset = estimate.offset - estimate.offsetError;
+            if (min_drift <= 0) {
+                // unbounded, see SyncEstimate#toRemote(double)
+                this.min_a1 = this.min_a2 = this.max_a1 = this.max_a2 = 0;
+                this.min_b1 = this.min_b2 = Double.NEGATIVE_INFINITY;
+                this.max_b1 = this.max_b2 = Double.POSITIVE_INFINITY;
+            } else {
+                this.min_a1 = this.max_a1 = 1.0d / min_drift;
+                this.min_a2 = this.max_a2 = 1.0d / max_drift;
+                this.min_b1 = -max_offset / min_drift;
+                this.min_b2 = -max_offset / max_drift;
+                this.max_b1 = -min_offset / min_drift;
+                this.max_b2 = -min_offset / max_drift;
+            }
+        }
+    }
+
+    private final TimeSyncAlgorithm algorithm;
+    private final LongSupplier clock;
+    private final long local_origin;
+    private volatile Coefficients coefficients;
+
+    /**
+     * Creates a clock for an algorithm whose local timestamps are {@link System#nanoTime()} readings relative to the
+     * reading at the time of creation.
+     *
+     * @param algorithm The algorithm providing the estimates.
+     */
+    public SyncedClock(TimeSyncAlgorithm algorithm) {
+        this(algorithm, NANO_TIME);
+    }
+
+    /**
+     * Creates a clock for an algorithm whose local timestamps are readings of the given clock relative to the reading
+     * at the time of creation.
+     *
+     * @param algorithm The algorithm providing the estimates.
+     * @param clock     The local clock, in the units of the local timestamps given to the algorithm.
+     */
+    public SyncedClock(TimeSyncAlgorithm algorithm, LongSupplier clock) {
+        this(algorithm, clock, clock.getAsLong());
+    }
+
+    /**
+     * @param algorithm   The algorithm providing the estimates.
+     * @param clock       The local clock, in the units of the local timestamps given to the algorithm.
+     * @param localOrigin Reading of the local clock which corresponds to local timestamp 0 of the algorithm.
+     */
+    public SyncedClock(TimeSyncAlgorithm algorithm, LongSupplier clock, long localOrigin) {
+        this.algorithm = algorithm;
+        this.clock = clock;
+        this.local_origin = localOrigin;
+        this.coefficients = new Coefficients(algorithm.getEstimate());
+    }
+
+    /**
+     * @return The coefficients for the current estimate, recomputed only if the estimate has changed.
+     */
+    private Coefficients coefficients() {
+        Coefficients c = this.coefficients;
+        SyncEstimate estimate = this.algorithm.getEstimate();
+        if (c.estimate != estimate) {
+            // concurrent readers may recompute the same coefficients, which is harmless
+            c = new Coefficients(estimate);
+            this.coefficients = c;
+        }
+        return c;
+    }
+
+    /**
+     * @return The current reading of the local clock.
+     */
+    public long nowLocal() {
+        return this.clock.getAsLong();
+    }
+
+    /**
+     * @return The reading of the local clock which corresponds to local timestamp 0 of the algorithm, i.e. the value
+     * to subtract from readings of the local clock before they are given to the algorithm as To and Tr.
+     */
+    public long getLocalOrigin() {
+        return this.local_origin;
+    }
+
+    /**
+     * @return The current estimated remote time.
+     */
+    public double nowRemote() {
+        return this.toRemote(this.clock.getAsLong());
+    }
+
+    /**
+     * Stores the bounds of the current remote time in the given array, which can be reused between calls.
+     *
+     * @param bounds Output array of at least two elements for the lower and upper bounds, in that order.
+     * @return The current estimated remote time.
+     */
+    public double nowRemoteBounds(double[] bounds) {
+        return this.toRemoteBounds(this.clock.getAsLong(), bounds);
+    }
+
+    /**
+     * Translates a reading of the local clock into remote time, equivalently to {@link SyncEstimate#toRemote(double)}
+     * of the reading relative to the local origin.
+     *
+     * @param local Reading of the local clock.
+     * @return The corresponding remote timestamp.
+     */
+    public double toRemote(long local) {
+        Coefficients c = this.coefficients();
+        return LineMath.evaluate(c.a, local - this.local_origin, c.b);
+    }
+
+    /**
+     * Translates a reading of the local clock into remote time and stores its bounds in the given array.
+     * If the lower bound of the drift is not positive, the bounds are infinite.
+     *
+     * @param local  Reading of the local clock.
+     * @param bounds Output array of at least two elements for the lower and upper bounds, in that order.
+     * @return The corresponding remote timestamp.
+     */
+    public double toRemoteBounds(long local, double[] bounds) {
+        if (bounds.length < 2)
+            throw new IllegalArgumentException("Bounds array must have at least two elements.");
+
+        Coefficients c = this.coefficients();
+        double x = local - this.local_origin;
+        bounds[0] = Math.min(LineMath.evaluate(c.min_a1, x, c.min_b1), LineMath.evaluate(c.min_a2, x, c.min_b2));
+        bounds[1] = Math.max(LineMath.evaluate(c.max_a1, x, c.max_b1), LineMath.evaluate(c.max_a2, x, c.max_b2));
+        return LineMath.evaluate(c.a, x, c.b);
+    }
+
+    /**
+     * @return The estimate the clock is currently based on.
+     */
+    public SyncEstimate getEstimate() {
+        return this.coefficients().estimate;
+    }
+
+    /**
+     * @return The wrapped algorithm.
+     */
+    public TimeSyncAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+}
@@ -19,6 +19,10 @@
 
 package com.github.molguin92.minisync.algorithm;
 
+import com.github.molguin92.minisync.filter.SampleFilter;
+
+import java.nio.ByteBuffer;
+
 public interface TimeSyncAlgorithm {
 
     /**
@@ -30,6 +34,48 @@ public interface TimeSyncAlgorithm {
      */
     void addDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException;
 
+    /**
+     * Adds a batch of data points to the algorithm, in order.
+     * The resulting estimates are the same as if the data points had been added one by one through
+     * {@link #addDataPoint(double, double, double)}. The algorithms in this library still select constraints and clean
+     * up once per data point, as that is what they would do when adding them one by one; they only publish a new
+     * {@link SyncEstimate} once per batch, which saves its allocation for the intermediate estimates but none of the
+     * computation.
+     * If an exception is thrown, the data points up to and including the one which caused it have been added.
+     *
+     * @param To Outgoing beacon timestamps.
+     * @param Tb Reply timestamps on the remote peer.
+     * @param Tr Reply reception timestamps.
+     */
+    default void addDataPoints(double[] To, double[] Tb, double[] Tr) throws TimeSyncAlgorithmException {
+        if (Tb.length != To.length || Tr.length != To.length)
+            throw new IllegalArgumentException("To, Tb and Tr must have the same length.");
+
+        this.addDataPoints(To, Tb, Tr, 0, To.length);
+    }
+
+    /**
+     * Adds a batch of data points stored in a range of the given arrays, see
+     * {@link #addDataPoints(double[], double[], double[])}. This allows the same arrays to be reused for batches of
+     * different sizes.
+     *
+     * @param To     Outgoing beacon timestamps.
+     * @param Tb     Reply timestamps on the remote peer.
+     * @param Tr     Reply reception timestamps.
+     * @param offset Index of the first data point of the batch in the arrays.
+     * @param length Number of data points in the batch.
+     * @throws IndexOutOfBoundsException If the range is not within the bounds of all three arrays.
+     */
+    default void addDataPoints(double[] To, double[] Tb, double[] Tr, int offset, int length)
+            throws TimeSyncAlgorithmException {
+        if (offset < 0 || length < 0 || length > Math.min(To.length, Math.min(Tb.length, Tr.length)) - offset)
+            throw new IndexOutOfBoundsException(
+                    String.format("Range of %d data points at %d is out of bounds.", length, offset));
+
+        for (int i = offset; i < offset + length; ++i)
+            this.addDataPoint(To[i], Tb[i], Tr[i]);
+    }
+
     /**
      * Get the current estimated relative clock drift.
      * If the number of samples provided to the algorithm so far is less than 2, returns 1.0.
@@ -62,6 +108,96 @@ public interface TimeSyncAlgorithm {
      */
     double getOffsetError();
 
+    /**
+     * Get a consistent snapshot of the current estimates.
+     * Unlike reading the individual estimates through the other getters, this method is safe to call from any thread
+     * while another thread is adding data points.
+     * The default implementation assembles the snapshot from the individual getters, and is therefore only consistent
+     * if the algorithm is not being updated concurrently. Since the reception timestamp of the latest data point is not
+     * available through this interface, the {@link SyncEstimate#timestamp} of the snapshot is NaN.
+     *
+     * @return The current estimates.
+     */
+    default SyncEstimate getEstimate() {
+        return new SyncEstimate(this.getDrift(), this.getDriftError(), this.getOffset(), this.getOffsetError(),
+                this.numDataPoints(), Double.NaN);
+    }
+
+    /**
+     * Translates a remote timestamp into local time using the current estimates.
+     *
+     * @param remote Timestamp on the remote clock.
+     * @return The corresponding local timestamp, with guaranteed bounds.
+     * @see SyncEstimate#toLocal(double)
+     */
+    default BoundedTime toLocal(double remote) {
+        return this.getEstimate().toLocal(remote);
+    }
+
+    /**
+     * Translates a local timestamp into remote time using the current estimates.
+     *
+     * @param local Timestamp on the local clock.
+     * @return The corresponding remote timestamp, with guaranteed bounds.
+     * @see SyncEstimate#toRemote(double)
+     */
+    default BoundedTime toRemote(double local) {
+        return this.getEstimate().toRemote(local);
+    }
+
+    /**
+     * Translates remote timestamps into local time using the current estimates.
+     *
+     * @see SyncEstimate#toLocal(double[], double[])
+     */
+    default void toLocal(double[] remote, double[] local) {
+        this.getEstimate().toLocal(remote, local);
+    }
+
+    /**
+     * Translates remote timestamps into local time using the current estimates.
+     *
+     * @see SyncEstimate#toLocal(long[], long[])
+     */
+    default void toLocal(long[] remote, long[] local) {
+        this.getEstimate().toLocal(remote, local);
+    }
+
+    /**
+     * Computes the bounds of the local times corresponding to the given remote timestamps using the current estimates.
+     *
+     * @see SyncEstimate#toLocalBounds(double[], double[], double[])
+     */
+    default void toLocalBounds(double[] remote, double[] min, double[] max) {
+        this.getEstimate().toLocalBounds(remote, min, max);
+    }
+
+    /**
+     * Translates local timestamps into remote time using the current estimates.
+     *
+     * @see SyncEstimate#toRemote(double[], double[])
+     */
+    default void toRemote(double[] local, double[] remote) {
+        this.getEstimate().toRemote(local, remote);
+    }
+
+    /**
+     * Translates local timestamps into remote time using the current estimates.
+     *
+     * @see SyncEstimate#toRemote(long[], long[])
+     */
+    default void toRemote(long[] local, long[] remote) {
+        this.getEstimate().toRemote(local, remote);
+    }
+
+    /**
+     * Computes the bounds of the remote times corresponding to the given local timestamps using the current estimates.
+     *
+     * @see SyncEstimate#toRemoteBounds(double[], double[], double[])
+     */
+    default void toRemoteBounds(double[] local, double[] min, double[] max) {
+        this.getEstimate().toRemoteBounds(local, min, max);
+    }
 
     /**
      * Get the number of processed data points so far. Note that this does not equal the number of data points currently
@@ -94,4 +230,93 @@ public interface TimeSyncAlgorithm {
      * @param d Minimum possible delay in microseconds.
      */
     void setMinimumRemoteDelay(double d);
+
+    /**
+     * Only base the estimates on data points within the given time horizon.
+     * Once a data point is added, all stored points with a remote timestamp (Tb) older than its Tb minus the horizon
+     * are discarded, and the best constraints are re-derived from the remaining points if necessary. This allows the
+     * estimates to track changes in drift (for instance due to temperature changes) and bounds memory usage and
+     * per-sample cost. Note that, since the algorithms discard points along the way, the estimates in a window may be
+     * looser than those obtained by running the algorithm on the points in the window from scratch.
+     * By default, the horizon is infinite.
+     *
+     * @param horizon Window horizon in microseconds, {@link Double#POSITIVE_INFINITY} to disable.
+     * @throws UnsupportedOperationException If the implementation does not support windows. This is the default.
+     */
+    default void setTimeWindow(double horizon) {
+        throw new UnsupportedOperationException("Windows are not supported.");
+    }
+
+    /**
+     * Only base the estimates on the given number of most recent data points.
+     * See {@link #setTimeWindow(double)}; both windows can be used at the same time.
+     * By default, the window is disabled.
+     *
+     * @param samples Number of data points in the window, or 0 to disable.
+     * @throws UnsupportedOperationException If the implementation does not support windows. This is the default.
+     */
+    default void setSampleWindow(int samples) {
+        throw new UnsupportedOperationException("Windows are not supported.");
+    }
+
+    /**
+     * Appends a filter to the pre-filter pipeline of the algorithm.
+     * Data points are passed through the filters in the order in which they were added, after the minimum delay
+     * adjustment, and are only added to the algorithm if every filter accepts them. Discarded data points do not
+     * count towards {@link #numDataPoints()}.
+     *
+     * @param filter The filter to append.
+     * @throws UnsupportedOperationException If the implementation does not support filters. This is the default.
+     */
+    default void addFilter(SampleFilter filter) {
+        throw new UnsupportedOperationException("Filters are not supported.");
+    }
+
+    /**
+     * Enables or disables the collection of metrics, see {@link AlgorithmMetrics}.
+     *
+     * @param metrics The metrics to record to, or null to disable.
+     * @throws UnsupportedOperationException If the implementation does not support metrics. This is the default.
+     */
+    default void setMetrics(AlgorithmMetrics metrics) {
+        throw new UnsupportedOperationException("Metrics are not supported.");
+    }
+
+    /**
+     * @return The size in bytes of a checkpoint of the current state, see {@link #checkpoint(ByteBuffer)}.
+     * @throws UnsupportedOperationException If the implementation does not support checkpoints. This is the default.
+     */
+    default int checkpointSize() {
+        throw new UnsupportedOperationException("Checkpoints are not supported.");
+    }
+
+    /**
+     * Writes the state of the algorithm (retained points, current constraints, estimates and the timestamps of the data
+     * points in the sample window) at the position of the buffer, in a compact versioned binary format, and advances
+     * the position by {@link #checkpointSize()} bytes. Configuration, i.e. minimum delays, windows and filters, is not
+     * part of the checkpoint.
+     *
+     * @param buffer Buffer to write to.
+     * @throws java.nio.BufferOverflowException If the buffer does not have enough space left.
+     * @throws UnsupportedOperationException    If the implementation does not support checkpoints. This is the default.
+     */
+    default void checkpoint(ByteBuffer buffer) {
+        throw new UnsupportedOperationException("Checkpoints are not supported.");
+    }
+
+    /**
+     * Restores a state written by {@link #checkpoint(ByteBuffer)} from the position of the buffer and advances the
+     * position past it. Checkpoints can be restored into any algorithm implementation, which then continues as if it
+     * had processed the data points itself. Windows must be configured before restoring, as configuring the sample
+     * window discards its timestamps; only the most recent timestamps which fit into the configured sample window are
+     * restored.
+     *
+     * @param buffer Buffer to read from.
+     * @throws IllegalArgumentException      If the buffer does not contain a valid checkpoint.
+     * @throws IllegalStateException         If the algorithm has already processed data points.
+     * @throws UnsupportedOperationException If the implementation does not support checkpoints. This is the default.
+     */
+    default void restore(ByteBuffer buffer) {
+        throw new UnsupportedOperationException("Checkpoints are not supported.");
+    }
 }
@@ -40,7 +40,7 @@ public class Line {
         this.highPoint = high;
 
         this.A = (low.y - high.y) / (low.x - high.x);
-        this.B = low.y - (this.A * low.x);
+        this.B = LineMath.intercept(this.A, low.x, low.y);
 
         if (low.x < high.x)
             this.type = TYPE.LOW_TO_HIGH;
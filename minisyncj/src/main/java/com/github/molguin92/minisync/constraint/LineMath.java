@@ -0,0 +1,48 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.constraint;
+
+/**
+ * Arithmetic on lines {@code y = A * x + B}, shared by all algorithms so that they compute bit-identical constraints
+ * and translations.
+ * <p>
+ * {@code Math.fma} is deliberately not used, not even on Java 9+: it gave no measurable speedup, not even for the batch
+ * translations, on CPUs with fused multiply-add instructions, it is orders of magnitude slower on CPUs without them,
+ * and its single rounding would make results differ from those on Java 8 in the last bit (see
+ * {@code LineMathBenchmark}).
+ */
+public final class LineMath {
+
+    private LineMath() {
+    }
+
+    /**
+     * @return The intercept B of the line of slope A through (x, y).
+     */
+    public static double intercept(double A, double x, double y) {
+        return y - (A * x);
+    }
+
+    /**
+     * @return A * x + B.
+     */
+    public static double evaluate(double A, double x, double B) {
+        return A * x + B;
+    }
+}
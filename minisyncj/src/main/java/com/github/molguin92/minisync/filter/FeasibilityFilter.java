@@ -0,0 +1,61 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.filter;
+
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+
+/**
+ * Discards data points which are inconsistent with the current estimates.
+ * <p>
+ * The local time corresponding to Tb must lie between To and Tr, and according to the current estimates it lies
+ * within {@code drift * Tb + offset +/- (driftError * |Tb| + offsetError)}. If these intervals are disjoint (by more
+ * than the given tolerance), the data point violates causality, for instance because of a timestamping error or a
+ * minimum delay which is too large, and adding it would make the constraints infeasible.
+ * <p>
+ * Note that this filter also discards data points after a change of the drift which the current estimates do not
+ * allow for. When using a window (see
+ * {@link com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm#setTimeWindow(double)}) to follow such changes,
+ * the tolerance should be chosen accordingly.
+ */
+public class FeasibilityFilter implements SampleFilter {
+
+    private final double tolerance;
+
+    public FeasibilityFilter() {
+        this(0.0d);
+    }
+
+    /**
+     * @param tolerance Margin by which a data point may fall outside the current bounds, in microseconds.
+     */
+    public FeasibilityFilter(double tolerance) {
+        if (!(tolerance >= 0))
+            throw new IllegalArgumentException("Tolerance must be >= 0.");
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public boolean accept(double To, double Tb, double Tr, SyncEstimate estimate) {
+        if (estimate.dataPoints < 2) return true; // no bounds yet
+
+        double local = estimate.drift * Tb + estimate.offset;
+        double error = estimate.driftError * Math.abs(Tb) + estimate.offsetError + this.tolerance;
+        return Tr >= local - error && To <= local + error;
+    }
+}
@@ -0,0 +1,72 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.filter;
+
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+
+import java.util.Arrays;
+
+/**
+ * Discards data points whose round-trip time (Tr - To) is above a percentile of the round-trip times of the most
+ * recent data points.
+ * <p>
+ * Data points with a large one-way delay only produce loose constraints which are never selected, so discarding them
+ * saves the work of computing and evaluating those constraints. All data points offered to the filter are recorded,
+ * including discarded ones, so the threshold adapts if the link becomes slower. Until the history is full, all data
+ * points are accepted.
+ */
+public class RoundTripFilter implements SampleFilter {
+
+    private final double percentile;
+    private final double[] history;
+    private final double[] sorted;
+    private int count;
+
+    /**
+     * @param history    Number of recent round-trip times to keep.
+     * @param percentile Percentile of the recent round-trip times above which data points are discarded, in (0, 1].
+     */
+    public RoundTripFilter(int history, double percentile) {
+        if (history < 1)
+            throw new IllegalArgumentException("History must hold at least 1 round-trip time.");
+        if (!(percentile > 0 && percentile <= 1))
+            throw new IllegalArgumentException("Percentile must be in (0, 1].");
+
+        this.percentile = percentile;
+        this.history = new double[history];
+        this.sorted = new double[history];
+        this.count = 0;
+    }
+
+    @Override
+    public boolean accept(double To, double Tb, double Tr, SyncEstimate estimate) {
+        double rtt = Tr - To;
+        boolean accept = true;
+        if (this.count >= this.history.length) {
+            System.arraycopy(this.history, 0, this.sorted, 0, this.history.length);
+            Arrays.sort(this.sorted);
+            int rank = (int) Math.ceil(this.percentile * this.sorted.length) - 1;
+            accept = rtt <= this.sorted[rank];
+        }
+
+        this.history[this.count % this.history.length] = rtt;
+        ++this.count;
+        return accept;
+    }
+}
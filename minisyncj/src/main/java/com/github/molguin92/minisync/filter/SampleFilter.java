@@ -0,0 +1,41 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.filter;
+
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+
+/**
+ * Pre-filter stage which decides whether a data point is passed on to a {@link TimeSyncAlgorithm}, see
+ * {@link TimeSyncAlgorithm#addFilter(SampleFilter)}.
+ * <p>
+ * Filters may keep state (for instance, a history of round-trip times), so an instance should only be added to a
+ * single algorithm.
+ */
+public interface SampleFilter {
+
+    /**
+     * @param To       Outgoing beacon timestamp, adjusted for the minimum local delay.
+     * @param Tb       Reply timestamp on the remote peer, adjusted for the minimum remote delay.
+     * @param Tr       Reply reception timestamp, adjusted for the minimum local delay.
+     * @param estimate The current estimates of the algorithm.
+     * @return true if the data point should be added to the algorithm, false to discard it.
+     */
+    boolean accept(double To, double Tb, double Tr, SyncEstimate estimate);
+}
@@ -0,0 +1,217 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.manager;
+
+import com.github.molguin92.minisync.algorithm.BoundedTime;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Relates the clocks of nodes which are not synchronized directly, for instance sensors synchronized to gateways which
+ * are in turn synchronized to a central server.
+ * <p>
+ * Each link of the graph is a {@link TimeSyncAlgorithm} relating the clocks of two nodes, and can be traversed in both
+ * directions. Timestamps are translated between two nodes along the shortest path (in number of links) between them,
+ * through a {@link ClockPath} which composes the estimates of the links along the way. Paths are cached, so repeated
+ * translations between the same nodes do not search the graph again, and only compose the estimates again when those of
+ * a link have changed.
+ * <p>
+ * Estimates and translations can be obtained from any thread without blocking. Changes to the links are serialized,
+ * and the algorithms themselves are not fed through the graph: data points should be added to them directly (or
+ * through a {@link SyncManager}) as usual.
+ *
+ * @param <K> Type of the node identifiers.
+ */
+public class ClockGraph<K> {
+
+    /**
+     * Algorithm relating the clock of a node to the clock of a neighbour.
+     */
+    private static final class Link {
+        final TimeSyncAlgorithm algorithm;
+        final boolean inverse; // the algorithm estimates the clock of the neighbour in terms of this node
+        final Set<ClockPath> paths; // paths through the link, shared by both directions; guarded by the graph
+
+        Link(TimeSyncAlgorithm algorithm, boolean inverse, Set<ClockPath> paths) {
+            this.algorithm = algorithm;
+            this.inverse = inverse;
+            this.paths = paths;
+        }
+    }
+
+    private final Map<K, Map<K, Link>> links; // guarded by this
+    private final ConcurrentHashMap<K, ConcurrentHashMap<K, ClockPath>> paths; // from -> to -> path
+
+    public ClockGraph() {
+        this.links = new HashMap<>();
+        this.paths = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Links two nodes through an algorithm which estimates the clock of one in terms of the other, i.e. which is fed
+     * data points with To and Tr measured on the local node and Tb measured on the remote node.
+     *
+     * @param local     Node whose clock the algorithm estimates in terms of the remote one.
+     * @param remote    Node whose clock the algorithm estimates the local one in terms of.
+     * @param algorithm Algorithm relating both clocks.
+     * @throws IllegalArgumentException If both nodes are the same or are already linked.
+     */
+    public synchronized void addLink(K local, K remote, TimeSyncAlgorithm algorithm) {
+        if (local.equals(remote))
+            throw new IllegalArgumentException("Cannot link a node to itself: " + local);
+        if (this.neighbours(local).containsKey(remote))
+            throw new IllegalArgumentException("Nodes are already linked: " + local + ", " + remote);
+
+        // paths which are no longer cached nor held by the application can be collected
+        Set<ClockPath> paths = Collections.newSetFromMap(new WeakHashMap<ClockPath, Boolean>());
+        this.neighbours(local).put(remote, new Link(algorithm, false, paths));
+        this.neighbours(remote).put(local, new Link(algorithm, true, paths));
+
+        // existing paths are still valid, but there might be shorter ones now
+        this.paths.clear();
+    }
+
+    /**
+     * Removes the link between two nodes. Paths through the link obtained from {@link #path(Object, Object)} can no
+     * longer be used, while all other paths are unaffected.
+     *
+     * @return true if the nodes were linked.
+     */
+    public synchronized boolean removeLink(K a, K b) {
+        Map<K, Link> a_links = this.links.get(a);
+        Link link = a_links == null ? null : a_links.remove(b);
+        if (link == null) return false;
+        this.links.get(b).remove(a);
+
+        for (ClockPath path : link.paths)
+            path.remove();
+        for (Map<K, ClockPath> from : this.paths.values())
+            from.values().removeAll(link.paths);
+        link.paths.clear();
+        return true;
+    }
+
+    private Map<K, Link> neighbours(K node) {
+        Map<K, Link> neighbours = this.links.get(node);
+        if (neighbours == null) {
+            neighbours = new HashMap<>();
+            this.links.put(node, neighbours);
+        }
+        return neighbours;
+    }
+
+    /**
+     * Returns the path along which timestamps of one node are translated into the clock of another. The path can be
+     * kept and used directly to avoid looking it up on every translation.
+     *
+     * @param from Node on whose clock timestamps are given.
+     * @param to   Node into whose clock they are translated.
+     * @return The shortest path from one node to the other.
+     * @throws IllegalArgumentException If both nodes are the same or are not connected.
+     */
+    public ClockPath path(K from, K to) {
+        ConcurrentHashMap<K, ClockPath> from_paths = this.paths.get(from);
+        ClockPath path = from_paths == null ? null : from_paths.get(to);
+        return path != null ? path : this.findPath(from, to);
+    }
+
+    /**
+     * Breadth-first search for the shortest path between two nodes.
+     */
+    private synchronized ClockPath findPath(K from, K to) {
+        if (from.equals(to))
+            throw new IllegalArgumentException("Source and destination are the same node: " + from);
+
+        Map<K, K> previous = new HashMap<>();
+        ArrayDeque<K> queue = new ArrayDeque<>();
+        previous.put(from, from);
+        queue.add(from);
+        while (!queue.isEmpty() && !previous.containsKey(to)) {
+            K node = queue.poll();
+            Map<K, Link> neighbours = this.links.get(node);
+            if (neighbours == null) continue;
+            for (K neighbour : neighbours.keySet()) {
+                if (!previous.containsKey(neighbour)) {
+                    previous.put(neighbour, node);
+                    queue.add(neighbour);
+                }
+            }
+        }
+
+        if (!previous.containsKey(to))
+            throw new IllegalArgumentException("No path from " + from + " to " + to);
+
+        // walk back from the destination; each hop translates from the clock of node into the clock of next
+        List<Link> hops = new ArrayList<>();
+        for (K next = to; !next.equals(from); ) {
+            K node = previous.get(next);
+            hops.add(0, this.links.get(next).get(node));
+            next = node;
+        }
+
+        TimeSyncAlgorithm[] algorithms = new TimeSyncAlgorithm[hops.size()];
+        boolean[] inverse = new boolean[hops.size()];
+        for (int i = 0; i < algorithms.length; ++i) {
+            algorithms[i] = hops.get(i).algorithm;
+            inverse[i] = hops.get(i).inverse;
+        }
+
+        ClockPath path = new ClockPath(algorithms, inverse);
+        for (Link hop : hops)
+            hop.paths.add(path);
+        ConcurrentHashMap<K, ClockPath> from_paths = this.paths.get(from);
+        if (from_paths == null) {
+            from_paths = new ConcurrentHashMap<>();
+            this.paths.put(from, from_paths);
+        }
+        from_paths.put(to, path);
+        return path;
+    }
+
+    /**
+     * @return The composed estimate relating the clock of one node (local) to the clock of another (remote).
+     * @see ClockPath#getEstimate()
+     */
+    public SyncEstimate getEstimate(K from, K to) {
+        return this.path(from, to).getEstimate();
+    }
+
+    /**
+     * Translates a timestamp on the clock of one node into the clock of another.
+     *
+     * @param from Node on whose clock the timestamp is given.
+     * @param to   Node into whose clock it is translated.
+     * @param t    Timestamp on the clock of the first node.
+     * @return The corresponding timestamp on the clock of the second node, and its bounds.
+     */
+    public BoundedTime translate(K from, K to, double t) {
+        return this.path(from, to).translate(t);
+    }
+}
@@ -0,0 +1,169 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.manager;
+
+import com.github.molguin92.minisync.algorithm.BoundedTime;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+
+/**
+ * Translates timestamps between the clocks at both ends of a path in a {@link ClockGraph}.
+ * <p>
+ * The estimates of the links along the path are composed into a single {@link SyncEstimate}, relating the clock at the
+ * end of the path ("local") to the clock at the start of the path ("remote"). The composed estimate is cached together
+ * with the link estimates it was computed from, and only recomputed when one of the latter changes. Since algorithms
+ * publish a new estimate only when it changes, checking this amounts to one reference comparison per link, and
+ * translations on an unchanged path do not allocate beyond their results.
+ * <p>
+ * The error bounds of the composed estimate are guaranteed to contain the true drift and offset of the path given that
+ * those of each link do, but, as they are bounds over the whole path, are looser than the sum of the bounds of the
+ * individual links.
+ */
+public final class ClockPath {
+
+    private final TimeSyncAlgorithm[] links;
+    private final boolean[] inverse; // the link estimates the clock at the start of the hop in terms of the end
+    private volatile Composition composition;
+    private volatile boolean removed;
+
+    /**
+     * Link estimates together with the estimate composed from them.
+     */
+    private static final class Composition {
+        final SyncEstimate[] sources;
+        final SyncEstimate estimate;
+
+        Composition(SyncEstimate[] sources, SyncEstimate estimate) {
+            this.sources = sources;
+            this.estimate = estimate;
+        }
+    }
+
+    ClockPath(TimeSyncAlgorithm[] links, boolean[] inverse) {
+        this.links = links;
+        this.inverse = inverse;
+        this.composition = null;
+        this.removed = false;
+    }
+
+    /**
+     * @return The number of links along the path.
+     */
+    public int length() {
+        return this.links.length;
+    }
+
+    /**
+     * @return The estimate relating the clock at the end of the path (local) to the clock at its start (remote). Its
+     * number of data points is the lowest among the links, and its timestamp is NaN.
+     * @throws IllegalStateException If a link along the path has been removed from the graph.
+     */
+    public SyncEstimate getEstimate() {
+        if (this.removed)
+            throw new IllegalStateException("A link along the path has been removed.");
+
+        Composition composition = this.composition;
+        if (composition != null) {
+            SyncEstimate[] sources = composition.sources;
+            int i = 0;
+            while (i < sources.length && this.links[i].getEstimate() == sources[i]) ++i;
+            if (i == sources.length) return composition.estimate;
+        }
+
+        composition = this.compose();
+        this.composition = composition;
+        return composition.estimate;
+    }
+
+    /**
+     * Translates a timestamp on the clock at the start of the path into the clock at its end.
+     *
+     * @param t Timestamp on the clock at the start of the path.
+     * @return The corresponding timestamp on the clock at the end of the path, and its bounds.
+     */
+    public BoundedTime translate(double t) {
+        return this.getEstimate().toLocal(t);
+    }
+
+    /**
+     * Translates timestamps on the clock at the start of the path into the clock at its end, without bounds.
+     *
+     * @param in  Timestamps on the clock at the start of the path.
+     * @param out Output array for the translated timestamps, at least as long as in.
+     */
+    public void translate(double[] in, double[] out) {
+        this.getEstimate().toLocal(in, out);
+    }
+
+    void remove() {
+        this.removed = true;
+    }
+
+    private Composition compose() {
+        SyncEstimate[] sources = new SyncEstimate[this.links.length];
+        double drift = 1.0d;
+        double drift_error = 0.0d;
+        double offset = 0.0d;
+        double offset_error = 0.0d;
+        int datapoints = Integer.MAX_VALUE;
+
+        for (int i = 0; i < this.links.length; ++i) {
+            SyncEstimate e = this.links[i].getEstimate();
+            sources[i] = e;
+            datapoints = Math.min(datapoints, e.dataPoints);
+
+            double a = e.drift;
+            double da = e.driftError;
+            double b = e.offset;
+            double db = e.offsetError;
+            if (this.inverse[i]) {
+                // remote = local / A - B / A, with A and B anywhere within their bounds
+                double min_a = a - da;
+                double max_a = a + da;
+                if (min_a <= 0) {
+                    a = 1.0d / a;
+                    da = Double.POSITIVE_INFINITY;
+                    b = -b * a;
+                    db = Double.POSITIVE_INFINITY;
+                } else {
+                    double min_b = b - db;
+                    double max_b = b + db;
+                    double inv_a = 1.0d / a;
+                    double inv_b = -b * inv_a;
+                    db = Math.max(Math.max(Math.abs(min_b / min_a + inv_b), Math.abs(min_b / max_a + inv_b)),
+                            Math.max(Math.abs(max_b / min_a + inv_b), Math.abs(max_b / max_a + inv_b)));
+                    da = 1.0d / min_a - inv_a;
+                    a = inv_a;
+                    b = inv_b;
+                }
+            }
+
+            // (a +/- da) * ((drift +/- drift_error) * t + offset +/- offset_error) + b +/- db
+            double new_drift_error = Math.abs(a) * drift_error + Math.abs(drift) * da + da * drift_error;
+            offset_error = Math.abs(a) * offset_error + Math.abs(offset) * da + da * offset_error + db;
+            offset = a * offset + b;
+            drift_error = new_drift_error;
+            drift = a * drift;
+        }
+
+        return new Composition(sources,
+                new SyncEstimate(drift, drift_error, offset, offset_error, datapoints, Double.NaN));
+    }
+}
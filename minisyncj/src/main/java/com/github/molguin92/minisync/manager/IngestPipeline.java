@@ -0,0 +1,294 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.manager;
+
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+
+import java.io.Closeable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a {@link TimeSyncAlgorithm} with data points offered from any number of threads, without locking.
+ * <p>
+ * Data points are stored in a bounded ring of primitive (To, Tb, Tr) slots, which producers claim with a single
+ * compare-and-set on the tail of the ring. A dedicated writer thread, the only one to touch the algorithm, drains the
+ * ring in order and adds the data points in batches through
+ * {@link TimeSyncAlgorithm#addDataPoints(double[], double[], double[], int, int)}, so the estimates are the same as if
+ * the data points had been added one by one in the order in which their slots were claimed. Since the algorithms expect
+ * data points in order, producers should offer them as soon as the replies are received. When the ring is full, data
+ * points are rejected rather than blocking the producer.
+ * <p>
+ * The writer parks while the ring is empty. Producers publish their slot with a volatile write and only then check
+ * whether the writer is parked, while the writer sets its flag before checking the ring one last time, so either the
+ * producer sees the flag and unparks the writer or the writer sees the data point and does not park.
+ * <p>
+ * Estimates can be read from any thread through the algorithm as usual. If a batch fails, the remaining data points of
+ * the batch are discarded and the exception is made available through {@link #getLastError()}.
+ */
+public class IngestPipeline implements Closeable {
+
+    private final TimeSyncAlgorithm algorithm;
+    private final int mask;
+
+    // slot i holds the data point with sequence number s iff sequences[i] == s + 1; it is free for s iff == s
+    private final AtomicLongArray sequences;
+    private final double[] slot_To;
+    private final double[] slot_Tb;
+    private final double[] slot_Tr;
+
+    private final AtomicLong tail; // next sequence number to claim
+    private long head; // next sequence number to drain, only accessed by the writer
+    private volatile long drained;
+    private final AtomicLong rejected;
+
+    private final Thread writer;
+    private volatile boolean writer_parked;
+    private volatile boolean closed;
+    private volatile Exception last_error;
+    private volatile long failed_batches;
+
+    // scratch arrays for batches, only accessed by the writer
+    private final double[] batch_To;
+    private final double[] batch_Tb;
+    private final double[] batch_Tr;
+
+    /**
+     * Creates a pipeline with its own daemon writer thread.
+     *
+     * @param algorithm Algorithm to feed, which must not be fed from anywhere else.
+     * @param capacity  Capacity of the ring, rounded up to the next power of 2.
+     */
+    public IngestPipeline(TimeSyncAlgorithm algorithm, int capacity) {
+        this(algorithm, capacity, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "minisync-ingest");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param algorithm Algorithm to feed, which must not be fed from anywhere else.
+     * @param capacity  Capacity of the ring, rounded up to the next power of 2.
+     * @param factory   Factory for the writer thread.
+     */
+    public IngestPipeline(TimeSyncAlgorithm algorithm, int capacity, ThreadFactory factory) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+
+        capacity = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.algorithm = algorithm;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; ++i)
+            this.sequences.set(i, i);
+        this.slot_To = new double[capacity];
+        this.slot_Tb = new double[capacity];
+        this.slot_Tr = new double[capacity];
+
+        this.tail = new AtomicLong(0);
+        this.head = 0;
+        this.drained = 0;
+        this.rejected = new AtomicLong(0);
+        this.writer_parked = false;
+        this.closed = false;
+        this.last_error = null;
+        this.failed_batches = 0;
+        this.batch_To = new double[capacity];
+        this.batch_Tb = new double[capacity];
+        this.batch_Tr = new double[capacity];
+
+        this.writer = factory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                IngestPipeline.this.drainLoop();
+            }
+        });
+        this.writer.start();
+    }
+
+    /**
+     * Offers a data point to the algorithm. Can be called from any thread.
+     *
+     * @param To Outgoing beacon timestamp.
+     * @param Tb Reply timestamp on the remote peer.
+     * @param Tr Reply reception timestamp.
+     * @return false if the ring is full, in which case the data point is discarded.
+     * @throws IllegalStateException If the pipeline has been closed.
+     */
+    public boolean offer(double To, double Tb, double Tr) {
+        if (this.closed) throw new IllegalStateException("Pipeline has been closed.");
+
+        long seq;
+        int index;
+        while (true) {
+            seq = this.tail.get();
+            index = (int) seq & this.mask;
+            long available = this.sequences.get(index);
+            if (available == seq) {
+                if (this.tail.compareAndSet(seq, seq + 1)) break;
+            } else if (available < seq) {
+                // the writer has not drained this slot since the previous lap
+                this.rejected.incrementAndGet();
+                return false;
+            }
+            // else another producer claimed the slot first; retry with the new tail
+        }
+
+        this.slot_To[index] = To;
+        this.slot_Tb[index] = Tb;
+        this.slot_Tr[index] = Tr;
+        // publishes the slot contents to the writer; a volatile write, as it must not be reordered with the read of the
+        // flag below
+        this.sequences.set(index, seq + 1);
+
+        if (this.writer_parked) {
+            this.writer_parked = false;
+            LockSupport.unpark(this.writer);
+        }
+        return true;
+    }
+
+    private void drainLoop() {
+        while (true) {
+            if (this.drain() > 0) continue;
+            if (this.closed && this.head == this.tail.get()) return;
+
+            // producers unpark the writer when they see the flag; a producer which read it before it was set has
+            // published its slot before, so the check below sees it
+            this.writer_parked = true;
+            if (this.sequences.get((int) this.head & this.mask) != this.head + 1)
+                LockSupport.park(this);
+            this.writer_parked = false;
+        }
+    }
+
+    /**
+     * Drains the ready slots at the head of the ring into the algorithm, as a single batch.
+     *
+     * @return The number of data points drained.
+     */
+    private int drain() {
+        long head = this.head;
+        int count = 0;
+        while (count <= this.mask && this.sequences.get((int) (head + count) & this.mask) == head + count + 1)
+            ++count;
+        if (count == 0) return 0;
+
+        for (int i = 0; i < count; ++i) {
+            int index = (int) (head + i) & this.mask;
+            this.batch_To[i] = this.slot_To[index];
+            this.batch_Tb[i] = this.slot_Tb[index];
+            this.batch_Tr[i] = this.slot_Tr[index];
+            this.sequences.lazySet(index, head + i + this.mask + 1); // free for the next lap
+        }
+        this.head = head + count;
+
+        try {
+            this.algorithm.addDataPoints(this.batch_To, this.batch_Tb, this.batch_Tr, 0, count);
+        } catch (TimeSyncAlgorithmException | RuntimeException e) {
+            this.last_error = e;
+            ++this.failed_batches;
+        }
+        this.drained = this.head;
+        return count;
+    }
+
+    /**
+     * Waits until all data points offered before this call have been added to the algorithm.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        long target = this.tail.get();
+        while (this.drained < target) {
+            if (!this.writer.isAlive()) throw new IllegalStateException("Writer thread has terminated.");
+            if (Thread.interrupted()) throw new InterruptedException();
+            LockSupport.unpark(this.writer);
+            LockSupport.parkNanos(this, 1000L);
+        }
+    }
+
+    /**
+     * @return The number of data points which have been added to the algorithm (or discarded by a failed batch).
+     */
+    public long numDrained() {
+        return this.drained;
+    }
+
+    /**
+     * @return The number of data points rejected because the ring was full.
+     */
+    public long numRejected() {
+        return this.rejected.get();
+    }
+
+    /**
+     * @return The capacity of the ring.
+     */
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * @return The number of batches which have failed.
+     */
+    public long numFailedBatches() {
+        return this.failed_batches;
+    }
+
+    /**
+     * @return The exception thrown by the last failed batch, or null if no batch has failed.
+     */
+    public Exception getLastError() {
+        return this.last_error;
+    }
+
+    /**
+     * @return The wrapped algorithm.
+     */
+    public TimeSyncAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    /**
+     * Stops accepting data points and waits for the writer thread to add the data points already offered.
+     * Data points offered concurrently with this call may be discarded.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        boolean interrupted = false;
+        while (this.writer.isAlive()) {
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
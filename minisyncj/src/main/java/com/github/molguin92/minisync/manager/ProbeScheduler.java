@@ -0,0 +1,271 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.manager;
+
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically probes the peers of a {@link SyncManager}, adapting the probe interval of each peer to the accuracy of
+ * its current estimates.
+ * <p>
+ * After every probe, the error of the estimates of the peer is projected over the next interval as
+ * {@code offsetError + driftError * interval}. If it is within the target error, the peer has converged and its interval
+ * is doubled (up to the maximum interval); otherwise, the interval is halved (down to the minimum interval). Peers
+ * without estimates yet are probed at the minimum interval, and failed probes leave the interval unchanged. Estimates are
+ * assumed to be in microseconds. Since the offset error applies at remote time 0, timestamps should be relative to a
+ * recent origin for it to be meaningful.
+ * <p>
+ * Timing is handled by a {@link ScheduledExecutorService}, which only dispatches probes, while the (potentially
+ * blocking) probes themselves run on a separate executor. By default, the latter is a virtual-thread-per-task executor
+ * when running on a JVM which supports them, so that a large number of peers can be probed concurrently without
+ * dedicating a platform thread to each; otherwise, probes run on the scheduler's own thread pool. Probes for the same
+ * peer never overlap.
+ *
+ * @param <K> Type of the peer identifiers.
+ */
+public class ProbeScheduler<K> implements Closeable {
+
+    /**
+     * Performs a probe exchange with a peer and adds the resulting data point to the {@link SyncManager}.
+     */
+    public interface Prober<K> {
+        void probe(K peer) throws Exception;
+    }
+
+    private final SyncManager<K> manager;
+    private final Prober<K> prober;
+    private final ScheduledExecutorService timer;
+    private final Executor executor;
+    private final boolean owns_executors;
+
+    private final double target_error;
+    private final long min_interval; // nanoseconds
+    private final long max_interval;
+
+    private final ConcurrentHashMap<K, Peer> peers;
+
+    /**
+     * Creates a scheduler with its own executors, using virtual threads for the probes if available.
+     *
+     * @param manager     Manager holding the estimates of the peers.
+     * @param prober      Probes a peer and adds the data point to the manager.
+     * @param targetError Target error of the estimates, in microseconds.
+     * @param minInterval Minimum probe interval.
+     * @param maxInterval Maximum probe interval.
+     * @param unit        Time unit of the intervals.
+     */
+    public ProbeScheduler(SyncManager<K> manager, Prober<K> prober, double targetError,
+                          long minInterval, long maxInterval, TimeUnit unit) {
+        this(manager, prober, targetError, minInterval, maxInterval, unit, newTimer(), null, true);
+    }
+
+    /**
+     * Creates a scheduler on the given executors, which are not shut down when the scheduler is closed.
+     *
+     * @param manager     Manager holding the estimates of the peers.
+     * @param prober      Probes a peer and adds the data point to the manager.
+     * @param targetError Target error of the estimates, in microseconds.
+     * @param minInterval Minimum probe interval.
+     * @param maxInterval Maximum probe interval.
+     * @param unit        Time unit of the intervals.
+     * @param timer       Executor used to schedule the probes.
+     * @param executor    Executor the probes run on.
+     */
+    public ProbeScheduler(SyncManager<K> manager, Prober<K> prober, double targetError,
+                          long minInterval, long maxInterval, TimeUnit unit,
+                          ScheduledExecutorService timer, Executor executor) {
+        this(manager, prober, targetError, minInterval, maxInterval, unit, timer, executor, false);
+    }
+
+    private ProbeScheduler(SyncManager<K> manager, Prober<K> prober, double targetError,
+                           long minInterval, long maxInterval, TimeUnit unit,
+                           ScheduledExecutorService timer, Executor executor, boolean owns_executors) {
+        if (!(targetError > 0))
+            throw new IllegalArgumentException("Target error must be > 0.");
+        if (minInterval <= 0 || maxInterval < minInterval)
+            throw new IllegalArgumentException("Intervals must satisfy 0 < minInterval <= maxInterval.");
+
+        this.manager = manager;
+        this.prober = prober;
+        this.timer = timer;
+        if (executor == null) executor = virtualThreadExecutor();
+        this.executor = executor == null ? timer : executor;
+        this.owns_executors = owns_executors;
+        this.target_error = targetError;
+        this.min_interval = unit.toNanos(minInterval);
+        this.max_interval = unit.toNanos(maxInterval);
+        this.peers = new ConcurrentHashMap<>();
+    }
+
+    private static ScheduledExecutorService newTimer() {
+        return Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "minisync-probe-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return An executor which starts a new virtual thread per task, or null if the JVM does not support them.
+     */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            // Java 21+; looked up reflectively to keep the library compatible with Java 8
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts probing a peer, immediately and then at an adaptive interval. Has no effect if the peer is already being
+     * probed.
+     *
+     * @param peer Peer identifier.
+     */
+    public void schedule(K peer) {
+        Peer state = new Peer(peer);
+        if (this.peers.putIfAbsent(peer, state) == null)
+            state.schedule(0);
+    }
+
+    /**
+     * Stops probing a peer. A probe which is already running is completed.
+     *
+     * @param peer Peer identifier.
+     * @return true if the peer was being probed.
+     */
+    public boolean cancel(K peer) {
+        Peer state = this.peers.remove(peer);
+        if (state == null) return false;
+        state.cancel();
+        return true;
+    }
+
+    /**
+     * @return The current probe interval of the given peer, or -1 if it is not being probed.
+     */
+    public long getInterval(K peer, TimeUnit unit) {
+        Peer state = this.peers.get(peer);
+        return state == null ? -1 : unit.convert(state.interval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Computes the interval until the next probe of a peer.
+     */
+    private long nextInterval(K peer, long interval) {
+        SyncEstimate estimate = this.manager.findEstimate(peer);
+        if (estimate == null || estimate.dataPoints < 2) return this.min_interval;
+
+        double error = estimate.offsetError + estimate.driftError * (interval / 1000.0d); // nanoseconds to microseconds
+        if (error <= this.target_error) return Math.min(2 * interval, this.max_interval);
+        else return Math.max(interval / 2, this.min_interval);
+    }
+
+    /**
+     * Stops probing all peers, and shuts down the executors if they were created by this scheduler.
+     */
+    @Override
+    public void close() {
+        for (K peer : this.peers.keySet())
+            this.cancel(peer);
+        if (this.owns_executors) {
+            this.timer.shutdownNow();
+            if (this.executor instanceof ExecutorService) ((ExecutorService) this.executor).shutdownNow();
+        }
+    }
+
+    private final class Peer implements Runnable {
+        private final K id;
+        private final Runnable probe;
+        private volatile long interval;
+        private volatile ScheduledFuture<?> next;
+        private volatile boolean cancelled;
+
+        Peer(K id) {
+            this.id = id;
+            this.interval = ProbeScheduler.this.min_interval;
+            this.cancelled = false;
+            this.probe = new Runnable() {
+                @Override
+                public void run() {
+                    Peer.this.probe();
+                }
+            };
+        }
+
+        void schedule(long delay) {
+            if (this.cancelled) return;
+            try {
+                this.next = ProbeScheduler.this.timer.schedule(this, delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                this.cancelled = true; // executor shut down
+            }
+        }
+
+        void cancel() {
+            this.cancelled = true;
+            ScheduledFuture<?> next = this.next;
+            if (next != null) next.cancel(false);
+        }
+
+        /**
+         * Dispatches the probe to the probe executor.
+         */
+        @Override
+        public void run() {
+            if (this.cancelled) return;
+            try {
+                ProbeScheduler.this.executor.execute(this.probe);
+            } catch (RejectedExecutionException e) {
+                this.cancelled = true;
+            }
+        }
+
+        private void probe() {
+            if (this.cancelled) return;
+            boolean probed = false;
+            try {
+                ProbeScheduler.this.prober.probe(this.id);
+                probed = true;
+            } catch (Exception ignored) {
+                // lost or failed probes carry no information about the accuracy, keep the interval
+            }
+
+            if (probed) this.interval = ProbeScheduler.this.nextInterval(this.id, this.interval);
+            this.schedule(this.interval);
+        }
+    }
+}
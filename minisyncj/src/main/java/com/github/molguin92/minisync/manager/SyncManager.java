@@ -0,0 +1,314 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.manager;
+
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of the clock relationships to a (potentially large) number of remote peers, each with its own
+ * {@link TimeSyncAlgorithm} instance.
+ * <p>
+ * Peers are stored in a {@link ConcurrentHashMap} and every algorithm instance is guarded by its own monitor, so
+ * samples for different peers can be ingested concurrently from any number of threads without contending on a global
+ * lock. Samples for the same peer are serialized. Estimates are read through {@link TimeSyncAlgorithm#getEstimate()}
+ * and thus never block ingestion.
+ *
+ * @param <K> Type of the peer identifiers.
+ */
+public class SyncManager<K> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final int CHECKPOINT_MAGIC = 0x4D534D47; // "MSMG"
+    private static final byte CHECKPOINT_VERSION = 1;
+    private static final int CHECKPOINT_HEADER_SIZE = 4 + 1 + 4;
+    private static final int KEY_SIZE_ESTIMATE = 64;
+
+    /**
+     * Encodes peer identifiers in checkpoints, see {@link #checkpoint(FileChannel, KeyCodec)}.
+     */
+    public interface KeyCodec<K> {
+        /**
+         * Writes the key at the position of the buffer.
+         *
+         * @throws java.nio.BufferOverflowException If the buffer does not have enough space left.
+         */
+        void write(K key, ByteBuffer buffer);
+
+        K read(ByteBuffer buffer);
+    }
+
+    private final ConcurrentHashMap<K, TimeSyncAlgorithm> peers;
+    private final Supplier<? extends TimeSyncAlgorithm> factory;
+
+    /**
+     * Creates a manager which uses a {@link PrimitiveMiniSyncAlgorithm} for each peer, with room for 16 retained points
+     * of each type before its arrays grow.
+     * <p>
+     * Each peer then takes about 20 objects, mostly primitive arrays, for roughly 2 KB of heap once its estimates have
+     * settled (measured on a 64-bit JVM with compressed references), i.e. about 10 MB for 5000 peers. A
+     * {@link com.github.molguin92.minisync.algorithm.TinySyncAlgorithm} is less accurate and hardly smaller, at about
+     * 1.5 KB per peer; pass a factory to {@link #SyncManager(Supplier)} to use it or another algorithm instead.
+     */
+    public SyncManager() {
+        this(new Supplier<TimeSyncAlgorithm>() {
+            @Override
+            public TimeSyncAlgorithm get() {
+                return new PrimitiveMiniSyncAlgorithm(DEFAULT_CAPACITY);
+            }
+        });
+    }
+
+    /**
+     * @param factory Creates the algorithm instance for each new peer. Must return a new instance on every call.
+     */
+    public SyncManager(Supplier<? extends TimeSyncAlgorithm> factory) {
+        this.peers = new ConcurrentHashMap<>();
+        this.factory = factory;
+    }
+
+    /**
+     * Adds a data point to the algorithm of the given peer, registering the peer if it is not known yet.
+     *
+     * @param peer Peer identifier.
+     * @param To   Outgoing beacon timestamp.
+     * @param Tb   Reply timestamp on the remote peer.
+     * @param Tr   Reply reception timestamp.
+     */
+    public void addDataPoint(K peer, double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        TimeSyncAlgorithm algo = this.getOrCreate(peer);
+        synchronized (algo) {
+            algo.addDataPoint(To, Tb, Tr);
+        }
+    }
+
+    /**
+     * Adds a batch of data points to the algorithm of the given peer, registering the peer if it is not known yet.
+     *
+     * @param peer Peer identifier.
+     * @param To   Outgoing beacon timestamps.
+     * @param Tb   Reply timestamps on the remote peer.
+     * @param Tr   Reply reception timestamps.
+     * @see TimeSyncAlgorithm#addDataPoints(double[], double[], double[])
+     */
+    public void addDataPoints(K peer, double[] To, double[] Tb, double[] Tr) throws TimeSyncAlgorithmException {
+        TimeSyncAlgorithm algo = this.getOrCreate(peer);
+        synchronized (algo) {
+            algo.addDataPoints(To, Tb, Tr);
+        }
+    }
+
+    private TimeSyncAlgorithm getOrCreate(K peer) {
+        TimeSyncAlgorithm algo = this.peers.get(peer);
+        if (algo == null) {
+            TimeSyncAlgorithm new_algo = this.factory.get();
+            algo = this.peers.putIfAbsent(peer, new_algo);
+            if (algo == null) algo = new_algo;
+        }
+        return algo;
+    }
+
+    private TimeSyncAlgorithm algorithm(K peer) {
+        TimeSyncAlgorithm algo = this.peers.get(peer);
+        if (algo == null)
+            throw new IllegalArgumentException("Unknown peer: " + peer);
+        return algo;
+    }
+
+    /**
+     * @return The current estimates for the given peer, or null if the peer is unknown.
+     */
+    SyncEstimate findEstimate(K peer) {
+        TimeSyncAlgorithm algo = this.peers.get(peer);
+        return algo == null ? null : algo.getEstimate();
+    }
+
+    /**
+     * @return A consistent snapshot of the current estimates for the given peer.
+     * @see TimeSyncAlgorithm#getEstimate()
+     */
+    public SyncEstimate getEstimate(K peer) {
+        return this.algorithm(peer).getEstimate();
+    }
+
+    /**
+     * @return The current estimated relative clock drift for the given peer.
+     * @see TimeSyncAlgorithm#getDrift()
+     */
+    public double getDrift(K peer) {
+        return this.getEstimate(peer).drift;
+    }
+
+    /**
+     * @return The current estimated relative clock drift error for the given peer.
+     * @see TimeSyncAlgorithm#getDriftError()
+     */
+    public double getDriftError(K peer) {
+        return this.getEstimate(peer).driftError;
+    }
+
+    /**
+     * @return The current estimated relative clock offset for the given peer.
+     * @see TimeSyncAlgorithm#getOffset()
+     */
+    public double getOffset(K peer) {
+        return this.getEstimate(peer).offset;
+    }
+
+    /**
+     * @return The current estimated relative clock offset error for the given peer.
+     * @see TimeSyncAlgorithm#getOffsetError()
+     */
+    public double getOffsetError(K peer) {
+        return this.getEstimate(peer).offsetError;
+    }
+
+    /**
+     * @return The number of data points processed so far for the given peer.
+     * @see TimeSyncAlgorithm#numDataPoints()
+     */
+    public int numDataPoints(K peer) {
+        TimeSyncAlgorithm algo = this.algorithm(peer);
+        synchronized (algo) {
+            return algo.numDataPoints();
+        }
+    }
+
+    /**
+     * Stops tracking a peer and discards its state.
+     *
+     * @param peer Peer identifier.
+     * @return true if the peer was known.
+     */
+    public boolean removePeer(K peer) {
+        return this.peers.remove(peer) != null;
+    }
+
+    /**
+     * @return An unmodifiable view of the identifiers of the currently tracked peers.
+     */
+    public Set<K> peers() {
+        return Collections.unmodifiableSet(this.peers.keySet());
+    }
+
+    /**
+     * Writes a checkpoint of the state of all peers (see {@link TimeSyncAlgorithm#checkpoint(ByteBuffer)}) at the
+     * current position of the channel. Each peer is checkpointed atomically with respect to its ingestion, but the
+     * checkpoint as a whole is not a snapshot across peers.
+     *
+     * @param channel Channel to write to.
+     * @param codec   Encodes the peer identifiers.
+     * @return The number of bytes written.
+     */
+    public long checkpoint(FileChannel channel, KeyCodec<? super K> codec) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_HEADER_SIZE + this.peers.size() * 1024);
+        buffer.position(CHECKPOINT_HEADER_SIZE); // header is written once the peers have been counted
+        int count = 0;
+        for (Map.Entry<K, TimeSyncAlgorithm> peer : this.peers.entrySet()) {
+            TimeSyncAlgorithm algo = peer.getValue();
+            synchronized (algo) {
+                while (true) {
+                    int start = buffer.position();
+                    try {
+                        if (buffer.remaining() < algo.checkpointSize() + KEY_SIZE_ESTIMATE)
+                            throw new BufferOverflowException();
+                        codec.write(peer.getKey(), buffer);
+                        algo.checkpoint(buffer);
+                        break;
+                    } catch (BufferOverflowException e) {
+                        buffer.position(start);
+                        ByteBuffer larger = ByteBuffer.allocate(
+                                2 * buffer.capacity() + algo.checkpointSize() + KEY_SIZE_ESTIMATE);
+                        buffer.flip();
+                        buffer = larger.put(buffer);
+                    }
+                }
+            }
+            ++count;
+        }
+
+        buffer.flip();
+        buffer.putInt(0, CHECKPOINT_MAGIC);
+        buffer.put(4, CHECKPOINT_VERSION);
+        buffer.putInt(5, count);
+
+        long written = 0;
+        while (buffer.hasRemaining())
+            written += channel.write(buffer);
+        return written;
+    }
+
+    /**
+     * Restores the peers from a checkpoint written by {@link #checkpoint(FileChannel, KeyCodec)}, starting at the
+     * current position of the channel. The checkpoint is memory-mapped and restored into new algorithm instances
+     * created by the factory of this manager, replacing the state of any peers with the same identifiers.
+     *
+     * @param channel Channel to read from, opened for reading.
+     * @param codec   Decodes the peer identifiers.
+     * @return The number of restored peers.
+     * @throws IllegalArgumentException If the channel does not contain a valid checkpoint.
+     */
+    public int restore(FileChannel channel, KeyCodec<? extends K> codec) throws IOException {
+        long position = channel.position();
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+        if (buffer.remaining() < CHECKPOINT_HEADER_SIZE || buffer.getInt() != CHECKPOINT_MAGIC)
+            throw new IllegalArgumentException("Not a SyncManager checkpoint.");
+        byte version = buffer.get();
+        if (version != CHECKPOINT_VERSION)
+            throw new IllegalArgumentException(String.format("Unsupported checkpoint version %d.", version));
+
+        int count = buffer.getInt();
+        for (int i = 0; i < count; ++i) {
+            if (!buffer.hasRemaining())
+                throw new IllegalArgumentException(String.format("Truncated checkpoint: %d of %d peers.", i, count));
+
+            // the codec reads the key without knowing the remaining length
+            K peer;
+            try {
+                peer = codec.read(buffer);
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException(String.format("Truncated checkpoint: %d of %d peers.", i, count), e);
+            }
+            TimeSyncAlgorithm algo = this.factory.get();
+            algo.restore(buffer);
+            this.peers.put(peer, algo);
+        }
+        channel.position(position + buffer.position());
+        return count;
+    }
+
+    public int numPeers() {
+        return this.peers.size();
+    }
+}
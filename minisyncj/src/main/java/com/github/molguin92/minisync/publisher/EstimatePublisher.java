@@ -0,0 +1,390 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.publisher;
+
+import com.github.molguin92.minisync.algorithm.AlgorithmMetrics;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.filter.SampleFilter;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the estimates of the wrapped algorithm to subscribers whenever they change significantly, so that
+ * consumers do not need to poll the algorithm. All {@link TimeSyncAlgorithm} methods are delegated to the wrapped
+ * algorithm.
+ * <p>
+ * After data points are added, the current estimate is compared to the last published one, and published if its drift
+ * or drift error changed by more than the drift threshold, or its offset or offset error by more than the offset
+ * threshold. Thresholds of 0 publish every change.
+ * <p>
+ * The {@link Subscriber} and {@link Subscription} interfaces follow the semantics of their counterparts in
+ * {@code java.util.concurrent.Flow} (which is not available on Java 8): subscribers receive at most as many estimates as
+ * they have requested, and signals to each subscriber are serialized. Estimates are delivered on the given executor,
+ * never on the thread adding data points. Subscriptions are conflated: each holds at most one undelivered estimate, which
+ * is replaced by newer ones, so slow subscribers always receive the latest estimate when they request the next one and
+ * never build up a queue.
+ * <p>
+ * Since the estimate is read after every addition of data points, lazy updates of the wrapped algorithm (see
+ * {@link com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm#setLazyUpdates(int)}) have no effect.
+ */
+public class EstimatePublisher implements TimeSyncAlgorithm, Closeable {
+
+    /**
+     * Receiver of estimates, see {@code java.util.concurrent.Flow.Subscriber}.
+     */
+    public interface Subscriber {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(SyncEstimate estimate);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Link between the publisher and a subscriber, see {@code java.util.concurrent.Flow.Subscription}.
+     */
+    public interface Subscription {
+        /**
+         * Adds n estimates to the demand of the subscriber. Since estimates are conflated, this is at most the number
+         * of estimates it will receive.
+         *
+         * @param n Must be > 0, otherwise the subscriber is signalled an {@link IllegalArgumentException}.
+         */
+        void request(long n);
+
+        void cancel();
+    }
+
+    private final TimeSyncAlgorithm algorithm;
+    private final double drift_threshold;
+    private final double offset_threshold;
+    private final Executor executor;
+    private final CopyOnWriteArrayList<EstimateSubscription> subscriptions;
+
+    private volatile SyncEstimate published;
+    private volatile boolean closed;
+
+    /**
+     * Creates a publisher which delivers estimates on the common {@link ForkJoinPool}.
+     *
+     * @param algorithm       Algorithm to wrap.
+     * @param driftThreshold  Minimum change in drift or drift error for an estimate to be published.
+     * @param offsetThreshold Minimum change in offset or offset error for an estimate to be published.
+     */
+    public EstimatePublisher(TimeSyncAlgorithm algorithm, double driftThreshold, double offsetThreshold) {
+        this(algorithm, driftThreshold, offsetThreshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param algorithm       Algorithm to wrap.
+     * @param driftThreshold  Minimum change in drift or drift error for an estimate to be published.
+     * @param offsetThreshold Minimum change in offset or offset error for an estimate to be published.
+     * @param executor        Executor on which estimates are delivered to the subscribers.
+     */
+    public EstimatePublisher(TimeSyncAlgorithm algorithm, double driftThreshold, double offsetThreshold,
+                             Executor executor) {
+        if (driftThreshold < 0 || offsetThreshold < 0)
+            throw new IllegalArgumentException("Thresholds must be >= 0.");
+        this.algorithm = algorithm;
+        this.drift_threshold = driftThreshold;
+        this.offset_threshold = offsetThreshold;
+        this.executor = executor;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.published = algorithm.getEstimate();
+        this.closed = false;
+    }
+
+    /**
+     * Adds a subscriber. Its {@link Subscriber#onSubscribe(Subscription)} method is called on the calling thread, and
+     * the last published estimate (if any data points have been added) is delivered as soon as it requests one.
+     *
+     * @throws IllegalStateException If the publisher has been closed.
+     */
+    public void subscribe(Subscriber subscriber) {
+        if (this.closed)
+            throw new IllegalStateException("Publisher is closed.");
+
+        EstimateSubscription subscription = new EstimateSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        this.subscriptions.add(subscription);
+
+        SyncEstimate published = this.published;
+        if (published != SyncEstimate.INITIAL) subscription.offer(published);
+    }
+
+    /**
+     * @return The number of active subscriptions.
+     */
+    public int numSubscribers() {
+        return this.subscriptions.size();
+    }
+
+    /**
+     * Stops publishing. Subscribers receive their pending estimate, if they request it, and are then completed.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        for (EstimateSubscription subscription : this.subscriptions)
+            subscription.complete();
+    }
+
+    /**
+     * Publishes the current estimate if it differs enough from the last published one.
+     */
+    private void checkEstimate() {
+        SyncEstimate estimate = this.algorithm.getEstimate();
+        SyncEstimate published = this.published;
+        if (estimate == published || this.closed) return;
+
+        if (Math.abs(estimate.drift - published.drift) > this.drift_threshold ||
+                Math.abs(estimate.driftError - published.driftError) > this.drift_threshold ||
+                Math.abs(estimate.offset - published.offset) > this.offset_threshold ||
+                Math.abs(estimate.offsetError - published.offsetError) > this.offset_threshold ||
+                published == SyncEstimate.INITIAL) {
+            this.published = estimate;
+            for (EstimateSubscription subscription : this.subscriptions)
+                subscription.offer(estimate);
+        }
+    }
+
+    /**
+     * Conflating subscription, drained on the executor by at most one task at a time.
+     */
+    private final class EstimateSubscription implements Subscription, Runnable {
+        private final Subscriber subscriber;
+        private final AtomicReference<SyncEstimate> pending;
+        private final AtomicLong requested;
+        private final AtomicInteger work; // number of drain requests since the running drain started
+        private volatile boolean cancelled;
+        private volatile boolean completing;
+        private volatile Throwable error;
+
+        EstimateSubscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+            this.pending = new AtomicReference<>();
+            this.requested = new AtomicLong();
+            this.work = new AtomicInteger();
+            this.cancelled = false;
+            this.completing = false;
+            this.error = null;
+        }
+
+        void offer(SyncEstimate estimate) {
+            this.pending.set(estimate);
+            this.drain();
+        }
+
+        void complete() {
+            this.completing = true;
+            this.drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Requested number of estimates must be > 0: " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = this.requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!this.requested.compareAndSet(current, next));
+            }
+            this.drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            EstimatePublisher.this.subscriptions.remove(this);
+        }
+
+        private void drain() {
+            if (this.work.getAndIncrement() == 0)
+                EstimatePublisher.this.executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (this.cancelled) return;
+
+                if (this.error != null) {
+                    this.cancel();
+                    this.subscriber.onError(this.error);
+                    return;
+                }
+
+                if (this.requested.get() > 0) {
+                    SyncEstimate estimate = this.pending.getAndSet(null);
+                    if (estimate != null) {
+                        if (this.requested.get() != Long.MAX_VALUE) this.requested.decrementAndGet();
+                        try {
+                            this.subscriber.onNext(estimate);
+                        } catch (Throwable t) {
+                            this.cancel();
+                            this.subscriber.onError(t);
+                            return;
+                        }
+                    }
+                }
+
+                // a pending estimate is delivered before completing, once it is requested
+                if (this.completing && this.pending.get() == null) {
+                    this.cancel();
+                    this.subscriber.onComplete();
+                    return;
+                }
+
+                missed = this.work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    @Override
+    public void addDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        try {
+            this.algorithm.addDataPoint(To, Tb, Tr);
+        } finally {
+            this.checkEstimate();
+        }
+    }
+
+    @Override
+    public void addDataPoints(double[] To, double[] Tb, double[] Tr) throws TimeSyncAlgorithmException {
+        try {
+            this.algorithm.addDataPoints(To, Tb, Tr);
+        } finally {
+            this.checkEstimate();
+        }
+    }
+
+    @Override
+    public void addDataPoints(double[] To, double[] Tb, double[] Tr, int offset, int length)
+            throws TimeSyncAlgorithmException {
+        try {
+            this.algorithm.addDataPoints(To, Tb, Tr, offset, length);
+        } finally {
+            this.checkEstimate();
+        }
+    }
+
+    @Override
+    public double getDrift() {
+        return this.algorithm.getDrift();
+    }
+
+    @Override
+    public double getDriftError() {
+        return this.algorithm.getDriftError();
+    }
+
+    @Override
+    public double getOffset() {
+        return this.algorithm.getOffset();
+    }
+
+    @Override
+    public double getOffsetError() {
+        return this.algorithm.getOffsetError();
+    }
+
+    @Override
+    public SyncEstimate getEstimate() {
+        return this.algorithm.getEstimate();
+    }
+
+    @Override
+    public int numDataPoints() {
+        return this.algorithm.numDataPoints();
+    }
+
+    @Override
+    public void setMinimumDelay(double d) {
+        this.algorithm.setMinimumDelay(d);
+    }
+
+    @Override
+    public void setMinimumLocalDelay(double d) {
+        this.algorithm.setMinimumLocalDelay(d);
+    }
+
+    @Override
+    public void setMinimumRemoteDelay(double d) {
+        this.algorithm.setMinimumRemoteDelay(d);
+    }
+
+    @Override
+    public void setTimeWindow(double horizon) {
+        this.algorithm.setTimeWindow(horizon);
+    }
+
+    @Override
+    public void setSampleWindow(int samples) {
+        this.algorithm.setSampleWindow(samples);
+    }
+
+    @Override
+    public void addFilter(SampleFilter filter) {
+        this.algorithm.addFilter(filter);
+    }
+
+    @Override
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.algorithm.setMetrics(metrics);
+    }
+
+    @Override
+    public int checkpointSize() {
+        return this.algorithm.checkpointSize();
+    }
+
+    @Override
+    public void checkpoint(ByteBuffer buffer) {
+        this.algorithm.checkpoint(buffer);
+    }
+
+    @Override
+    public void restore(ByteBuffer buffer) {
+        this.algorithm.restore(buffer);
+        this.checkEstimate();
+    }
+
+    /**
+     * @return The wrapped algorithm.
+     */
+    public TimeSyncAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+}
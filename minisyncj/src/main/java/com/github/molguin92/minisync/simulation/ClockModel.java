@@ -0,0 +1,62 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.simulation;
+
+/**
+ * Describes the clocks of simulated peers relative to the local clock, as {@code local = drift * remote + offset}.
+ * <p>
+ * The initial drift of each peer is normally distributed around the given drift, and its initial offset uniformly
+ * distributed around the given offset. The drift then performs a random walk, with a normally distributed step of the
+ * given standard deviation at every probe (e.g. as the temperature of the oscillators changes), while the clocks remain
+ * continuous.
+ */
+public final class ClockModel {
+    public final double drift;
+    public final double driftSpread;
+    public final double driftWander;
+    public final double offset;
+    public final double offsetSpread;
+
+    /**
+     * @param drift        Mean initial drift of the peers.
+     * @param driftSpread  Standard deviation of the initial drift of the peers.
+     * @param driftWander  Standard deviation of the change in drift between probes, or 0 for constant drifts.
+     * @param offset       Mean initial offset of the peers, in microseconds.
+     * @param offsetSpread Initial offsets are uniformly distributed within offset +/- offsetSpread.
+     */
+    public ClockModel(double drift, double driftSpread, double driftWander, double offset, double offsetSpread) {
+        if (!(drift > 0))
+            throw new IllegalArgumentException("Drift must be > 0.");
+        if (driftSpread < 0 || driftWander < 0 || offsetSpread < 0)
+            throw new IllegalArgumentException("Spreads must be >= 0.");
+        this.drift = drift;
+        this.driftSpread = driftSpread;
+        this.driftWander = driftWander;
+        this.offset = offset;
+        this.offsetSpread = offsetSpread;
+    }
+
+    /**
+     * Creates a model in which every peer has the same constant drift and offset.
+     */
+    public ClockModel(double drift, double offset) {
+        this(drift, 0.0d, 0.0d, offset, 0.0d);
+    }
+}
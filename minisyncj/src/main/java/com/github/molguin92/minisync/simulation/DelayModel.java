@@ -0,0 +1,84 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.simulation;
+
+import java.util.Random;
+
+/**
+ * Distribution of the one-way delays of a simulated link, in microseconds.
+ */
+public interface DelayModel {
+
+    /**
+     * @param random Source of randomness; the delay must only depend on the values drawn from it.
+     * @return A delay drawn from the distribution.
+     */
+    double delay(Random random);
+
+    /**
+     * @return A model whose delays are the sum of a delay of this model and a delay of the other.
+     */
+    default DelayModel plus(DelayModel other) {
+        final DelayModel self = this;
+        return new DelayModel() {
+            @Override
+            public double delay(Random random) {
+                return self.delay(random) + other.delay(random);
+            }
+        };
+    }
+
+    /**
+     * @return A model with a fixed delay.
+     */
+    static DelayModel constant(double delay) {
+        return new DelayModel() {
+            @Override
+            public double delay(Random random) {
+                return delay;
+            }
+        };
+    }
+
+    /**
+     * @return A model with delays uniformly distributed between min and max.
+     */
+    static DelayModel uniform(double min, double max) {
+        return new DelayModel() {
+            @Override
+            public double delay(Random random) {
+                return min + random.nextDouble() * (max - min);
+            }
+        };
+    }
+
+    /**
+     * @return A model with delays of at least min plus an exponentially distributed queueing delay with the given mean,
+     * as on congested links.
+     */
+    static DelayModel exponential(double min, double mean) {
+        return new DelayModel() {
+            @Override
+            public double delay(Random random) {
+                return min - Math.log(1.0d - random.nextDouble()) * mean;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.simulation;
+
+/**
+ * Describes the network link between the local node and simulated peers.
+ * <p>
+ * Probes are sent at a fixed interval on the local clock. Delays in each direction are drawn from separate models, so
+ * that links can be asymmetric, and every probe exchange is lost (in either direction) with a fixed probability.
+ */
+public final class LinkModel {
+    public final DelayModel forwardDelay;
+    public final DelayModel backwardDelay;
+    public final double lossRate;
+    public final double probeInterval;
+
+    /**
+     * @param forwardDelay  Delays from the local node to the peer.
+     * @param backwardDelay Delays from the peer back to the local node.
+     * @param lossRate      Probability of losing a probe exchange, in [0, 1).
+     * @param probeInterval Interval between probes, in microseconds on the local clock.
+     */
+    public LinkModel(DelayModel forwardDelay, DelayModel backwardDelay, double lossRate, double probeInterval) {
+        if (!(lossRate >= 0 && lossRate < 1))
+            throw new IllegalArgumentException("Loss rate must be in [0, 1).");
+        if (!(probeInterval > 0))
+            throw new IllegalArgumentException("Probe interval must be > 0.");
+        this.forwardDelay = forwardDelay;
+        this.backwardDelay = backwardDelay;
+        this.lossRate = lossRate;
+        this.probeInterval = probeInterval;
+    }
+
+    /**
+     * Creates a symmetric, lossless link.
+     */
+    public LinkModel(DelayModel delay, double probeInterval) {
+        this(delay, delay, 0.0d, probeInterval);
+    }
+}
@@ -0,0 +1,103 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.simulation;
+
+import java.util.Random;
+
+/**
+ * Generates the (To, Tb, Tr) samples of the probe exchanges with a simulated peer.
+ * <p>
+ * Each probe is sent at local time To, timestamped by the peer at Tb after the forward delay, and received back at
+ * local time Tr after the backward delay. All timestamps are in microseconds, and the simulation only depends on the
+ * seed, so the same seed always produces the same samples regardless of how fast they are consumed.
+ */
+public final class SimulatedPeer {
+
+    private final LinkModel link;
+    private final double drift_wander;
+    private final Random random;
+
+    private double drift;
+    private double offset;
+    private double local; // local time of the next probe
+
+    /**
+     * @param clock Model of the clock of the peer.
+     * @param link  Model of the link to the peer.
+     * @param seed  Seed for the random number generator.
+     */
+    public SimulatedPeer(ClockModel clock, LinkModel link, long seed) {
+        this.link = link;
+        this.drift_wander = clock.driftWander;
+        this.random = new Random(seed);
+
+        this.drift = clock.drift + clock.driftSpread * this.random.nextGaussian();
+        this.offset = clock.offset + clock.offsetSpread * (2 * this.random.nextDouble() - 1);
+        this.local = 0.0d;
+    }
+
+    /**
+     * Simulates the next probe exchange.
+     *
+     * @param sample Output array for To, Tb and Tr, in that order.
+     * @return false if the probe was lost, in which case sample is left untouched.
+     */
+    public boolean probe(double[] sample) {
+        if (this.drift_wander > 0) {
+            // keep the clocks continuous when the drift changes
+            double remote = (this.local - this.offset) / this.drift;
+            this.drift += this.drift_wander * this.random.nextGaussian();
+            this.offset = this.local - this.drift * remote;
+        }
+
+        double To = this.local;
+        this.local += this.link.probeInterval;
+        if (this.link.lossRate > 0 && this.random.nextDouble() < this.link.lossRate)
+            return false;
+
+        double Tb = this.toRemote(To) + this.link.forwardDelay.delay(this.random);
+        sample[0] = To;
+        sample[1] = Tb;
+        sample[2] = this.toLocal(Tb + this.link.backwardDelay.delay(this.random));
+        return true;
+    }
+
+    /**
+     * @return The true local time corresponding to the given time of the peer, with the current drift and offset.
+     */
+    public double toLocal(double remote) {
+        return this.drift * remote + this.offset;
+    }
+
+    /**
+     * @return The true time of the peer corresponding to the given local time, with the current drift and offset.
+     */
+    public double toRemote(double local) {
+        return (local - this.offset) / this.drift;
+    }
+
+    public double getDrift() {
+        return this.drift;
+    }
+
+    public double getOffset() {
+        return this.offset;
+    }
+}
@@ -0,0 +1,148 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.simulation;
+
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Drives simulated peers through {@link TimeSyncAlgorithm} instances, faster than real time, and measures the accuracy
+ * and cost of the resulting estimates.
+ * <p>
+ * Every peer gets its own algorithm instance and a {@link SimulatedPeer} seeded from the seed of the simulation and the
+ * index of the peer, so the samples and estimates (and thus all the accuracy figures of the result) are the same on
+ * every run, while peers are simulated in parallel. After every sample, the remote timestamp Tb of the sample is
+ * translated with the current estimate and compared to its true local time. Costs are measured as the wall-clock time
+ * spent in {@link TimeSyncAlgorithm#addDataPoint(double, double, double)} and the subsequent
+ * {@link TimeSyncAlgorithm#getEstimate()}, and are the only figures which vary between runs.
+ */
+public class Simulation {
+
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final ClockModel clock;
+    private final LinkModel link;
+    private final Supplier<? extends TimeSyncAlgorithm> factory;
+    private final long seed;
+
+    /**
+     * @param clock   Model of the clocks of the peers.
+     * @param link    Model of the links to the peers.
+     * @param factory Creates the algorithm instance for each peer. Must return a new instance on every call.
+     * @param seed    Seed of the simulation.
+     */
+    public Simulation(ClockModel clock, LinkModel link, Supplier<? extends TimeSyncAlgorithm> factory, long seed) {
+        this.clock = clock;
+        this.link = link;
+        this.factory = factory;
+        this.seed = seed;
+    }
+
+    /**
+     * @return The simulated peer with the given index, as used by {@link #run(int, int)}.
+     */
+    public SimulatedPeer peer(int index) {
+        return new SimulatedPeer(this.clock, this.link, this.seed + index * SEED_STEP);
+    }
+
+    /**
+     * Simulates the given number of probes to each of the given number of peers.
+     *
+     * @param peers   Number of peers.
+     * @param samples Number of probes sent to each peer, including lost ones.
+     * @return The accuracy and cost figures over all peers.
+     */
+    public SimulationResult run(int peers, int samples) {
+        final PeerResult[] results = new PeerResult[peers];
+        IntStream.range(0, peers).parallel().forEach(new IntConsumer() {
+            @Override
+            public void accept(int index) {
+                results[index] = Simulation.this.runPeer(index, samples);
+            }
+        });
+
+        return new SimulationResult(results);
+    }
+
+    private PeerResult runPeer(int index, int samples) {
+        SimulatedPeer peer = this.peer(index);
+        TimeSyncAlgorithm algo = this.factory.get();
+        PeerResult result = new PeerResult();
+        double[] sample = new double[3];
+
+        for (int i = 0; i < samples; ++i) {
+            if (!peer.probe(sample)) {
+                ++result.lost;
+                continue;
+            }
+
+            SyncEstimate estimate;
+            long start = System.nanoTime();
+            try {
+                algo.addDataPoint(sample[0], sample[1], sample[2]);
+                estimate = algo.getEstimate();
+            } catch (TimeSyncAlgorithmException | IllegalStateException e) {
+                result.failed = true;
+                break;
+            } finally {
+                result.nanos += System.nanoTime() - start;
+            }
+            ++result.samples;
+            if (estimate.dataPoints < 2) continue;
+
+            double remote = sample[1];
+            double truth = peer.toLocal(remote);
+            double value = estimate.drift * remote + estimate.offset;
+            double error = estimate.driftError * Math.abs(remote) + estimate.offsetError;
+            double deviation = Math.abs(value - truth);
+
+            ++result.checks;
+            if (deviation > error) ++result.violations;
+            result.sum_error += deviation;
+            result.max_error = Math.max(result.max_error, deviation);
+            result.sum_width += 2 * error;
+        }
+
+        if (!result.failed)
+            result.drift_error = Math.abs(algo.getEstimate().drift - peer.getDrift());
+        return result;
+    }
+
+    /**
+     * Figures of a single peer.
+     */
+    static final class PeerResult {
+        boolean failed = false;
+        long samples = 0;
+        long lost = 0;
+        long checks = 0;
+        long violations = 0;
+        double sum_error = 0.0d;
+        double max_error = 0.0d;
+        double sum_width = 0.0d;
+        double drift_error = 0.0d;
+        long nanos = 0;
+    }
+}
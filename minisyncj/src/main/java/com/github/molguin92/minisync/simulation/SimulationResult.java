@@ -0,0 +1,138 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+package com.github.molguin92.minisync.simulation;
+
+/**
+ * Accuracy and cost figures of a {@link Simulation} run. Errors are in microseconds.
+ */
+public final class SimulationResult {
+
+    public final int peers;
+
+    /**
+     * Number of peers whose algorithm threw an exception, after which their simulation was stopped.
+     */
+    public final int failedPeers;
+
+    /**
+     * Number of samples delivered to the algorithms.
+     */
+    public final long samples;
+
+    public final long lostSamples;
+
+    /**
+     * Number of translations checked against the true time, one per sample once an algorithm has two data points.
+     */
+    public final long checks;
+
+    /**
+     * Number of translations whose bounds did not contain the true time. This happens when the drift wanders, since the
+     * estimates assume a constant drift, but also with constant drifts if remote timestamps are negative: intercepts at
+     * remote time 0 then bound the offset from the wrong side, so the offset error can become negative, and may stay
+     * negative after the remote timestamps have become positive.
+     */
+    public final long boundViolations;
+
+    /**
+     * Mean and maximum absolute difference between translated and true times.
+     */
+    public final double meanError;
+    public final double maxError;
+
+    /**
+     * Mean width of the bounds of the translated times.
+     */
+    public final double meanBoundWidth;
+
+    /**
+     * Mean absolute difference between the final drift estimates and the final true drifts, over the peers which did
+     * not fail.
+     */
+    public final double meanDriftError;
+
+    /**
+     * Total time spent adding data points and reading the estimates, in nanoseconds.
+     */
+    public final long ingestNanos;
+
+    SimulationResult(Simulation.PeerResult[] results) {
+        int failed = 0;
+        long samples = 0;
+        long lost = 0;
+        long checks = 0;
+        long violations = 0;
+        double sum_error = 0.0d;
+        double max_error = 0.0d;
+        double sum_width = 0.0d;
+        double sum_drift_error = 0.0d;
+        long nanos = 0;
+
+        // combined in order, so that the accuracy figures do not depend on scheduling
+        for (Simulation.PeerResult result : results) {
+            if (result.failed) ++failed;
+            else sum_drift_error += result.drift_error;
+            samples += result.samples;
+            lost += result.lost;
+            checks += result.checks;
+            violations += result.violations;
+            sum_error += result.sum_error;
+            max_error = Math.max(max_error, result.max_error);
+            sum_width += result.sum_width;
+            nanos += result.nanos;
+        }
+
+        this.peers = results.length;
+        this.failedPeers = failed;
+        this.samples = samples;
+        this.lostSamples = lost;
+        this.checks = checks;
+        this.boundViolations = violations;
+        this.meanError = checks > 0 ? sum_error / checks : Double.NaN;
+        this.maxError = max_error;
+        this.meanBoundWidth = checks > 0 ? sum_width / checks : Double.NaN;
+        this.meanDriftError = failed < results.length ? sum_drift_error / (results.length - failed) : Double.NaN;
+        this.ingestNanos = nanos;
+    }
+
+    /**
+     * @return The mean cost of adding a data point and reading the estimates, in nanoseconds.
+     */
+    public double nanosPerSample() {
+        return this.samples > 0 ? (double) this.ingestNanos / this.samples : Double.NaN;
+    }
+
+    /**
+     * @return The fraction of checked translations whose bounds did not contain the true time.
+     */
+    public double violationRate() {
+        return this.checks > 0 ? (double) this.boundViolations / this.checks : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationResult{peers=" + this.peers + ", failedPeers=" + this.failedPeers +
+                ", samples=" + this.samples + ", lostSamples=" + this.lostSamples +
+                ", boundViolations=" + this.boundViolations + "/" + this.checks +
+                ", meanError=" + this.meanError + ", maxError=" + this.maxError +
+                ", meanBoundWidth=" + this.meanBoundWidth + ", meanDriftError=" + this.meanDriftError +
+                ", nanosPerSample=" + this.nanosPerSample() + '}';
+    }
+}
@@ -0,0 +1,167 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.trace;
+
+import com.github.molguin92.minisync.algorithm.AlgorithmMetrics;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.filter.SampleFilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Records every data point added to the wrapped algorithm to a trace, before passing it on.
+ * All other methods are delegated to the wrapped algorithm.
+ */
+public class RecordingTimeSyncAlgorithm implements TimeSyncAlgorithm {
+
+    private final TimeSyncAlgorithm algorithm;
+    private final TraceWriter writer;
+
+    /**
+     * @param algorithm Algorithm to wrap.
+     * @param writer    Writer to record the data points to. It is not closed by this class.
+     */
+    public RecordingTimeSyncAlgorithm(TimeSyncAlgorithm algorithm, TraceWriter writer) {
+        this.algorithm = algorithm;
+        this.writer = writer;
+    }
+
+    /**
+     * @throws UncheckedIOException If the trace cannot be extended.
+     */
+    @Override
+    public void addDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+        try {
+            this.writer.append(To, Tb, Tr);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.algorithm.addDataPoint(To, Tb, Tr);
+    }
+
+    /**
+     * @throws UncheckedIOException If the trace cannot be extended.
+     */
+    @Override
+    public void addDataPoints(double[] To, double[] Tb, double[] Tr, int offset, int length)
+            throws TimeSyncAlgorithmException {
+        if (offset < 0 || length < 0 || length > Math.min(To.length, Math.min(Tb.length, Tr.length)) - offset)
+            throw new IndexOutOfBoundsException(
+                    String.format("Range of %d data points at %d is out of bounds.", length, offset));
+
+        try {
+            for (int i = offset; i < offset + length; ++i)
+                this.writer.append(To[i], Tb[i], Tr[i]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.algorithm.addDataPoints(To, Tb, Tr, offset, length);
+    }
+
+    @Override
+    public double getDrift() {
+        return this.algorithm.getDrift();
+    }
+
+    @Override
+    public double getDriftError() {
+        return this.algorithm.getDriftError();
+    }
+
+    @Override
+    public double getOffset() {
+        return this.algorithm.getOffset();
+    }
+
+    @Override
+    public double getOffsetError() {
+        return this.algorithm.getOffsetError();
+    }
+
+    @Override
+    public SyncEstimate getEstimate() {
+        return this.algorithm.getEstimate();
+    }
+
+    @Override
+    public int numDataPoints() {
+        return this.algorithm.numDataPoints();
+    }
+
+    @Override
+    public void setMinimumDelay(double d) {
+        this.algorithm.setMinimumDelay(d);
+    }
+
+    @Override
+    public void setMinimumLocalDelay(double d) {
+        this.algorithm.setMinimumLocalDelay(d);
+    }
+
+    @Override
+    public void setMinimumRemoteDelay(double d) {
+        this.algorithm.setMinimumRemoteDelay(d);
+    }
+
+    @Override
+    public void setTimeWindow(double horizon) {
+        this.algorithm.setTimeWindow(horizon);
+    }
+
+    @Override
+    public void setSampleWindow(int samples) {
+        this.algorithm.setSampleWindow(samples);
+    }
+
+    @Override
+    public void addFilter(SampleFilter filter) {
+        this.algorithm.addFilter(filter);
+    }
+
+    @Override
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.algorithm.setMetrics(metrics);
+    }
+
+    @Override
+    public int checkpointSize() {
+        return this.algorithm.checkpointSize();
+    }
+
+    @Override
+    public void checkpoint(ByteBuffer buffer) {
+        this.algorithm.checkpoint(buffer);
+    }
+
+    @Override
+    public void restore(ByteBuffer buffer) {
+        this.algorithm.restore(buffer);
+    }
+
+    /**
+     * @return The wrapped algorithm.
+     */
+    public TimeSyncAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+}
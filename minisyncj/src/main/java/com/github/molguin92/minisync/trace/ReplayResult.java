@@ -0,0 +1,79 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.trace;
+
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+
+/**
+ * Outcome of a {@link TraceReplay}: the number of records replayed and, for each algorithm, the exception which
+ * stopped it, if any. Algorithms are identified by their position in the arguments of the replay.
+ */
+public final class ReplayResult {
+
+    /**
+     * Number of records read from the trace.
+     */
+    public final long records;
+
+    private final TimeSyncAlgorithmException[] failures;
+    private final long[] failed_records;
+
+    ReplayResult(long records, TimeSyncAlgorithmException[] failures, long[] failedRecords) {
+        this.records = records;
+        this.failures = failures;
+        this.failed_records = failedRecords;
+    }
+
+    /**
+     * @return true if any algorithm threw an exception.
+     */
+    public boolean failed() {
+        for (TimeSyncAlgorithmException failure : this.failures)
+            if (failure != null) return true;
+        return false;
+    }
+
+    /**
+     * @param algorithm Position of the algorithm in the arguments of the replay.
+     * @return The exception thrown by the algorithm, or null if it processed the whole trace.
+     */
+    public TimeSyncAlgorithmException getFailure(int algorithm) {
+        return this.failures[algorithm];
+    }
+
+    /**
+     * @param algorithm Position of the algorithm in the arguments of the replay.
+     * @return The index in the trace of the record which caused the exception, or -1 if the algorithm did not fail.
+     * The algorithm was not fed any records after it.
+     */
+    public long getFailedRecord(int algorithm) {
+        return this.failed_records[algorithm];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("ReplayResult{records=").append(this.records);
+        for (int i = 0; i < this.failures.length; ++i) {
+            if (this.failures[i] == null) continue;
+            b.append(", algorithm ").append(i).append(" failed at record ").append(this.failed_records[i])
+                    .append(": ").append(this.failures[i].getMessage());
+        }
+        return b.append('}').toString();
+    }
+}
@@ -0,0 +1,67 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of trace files written by {@link TraceWriter}.
+ * <p>
+ * A trace starts with a {@value #HEADER_SIZE}-byte header:
+ * <pre>
+ *     int     magic ("MSTR")
+ *     byte    version
+ *     byte[3] padding
+ *     long    number of records
+ *     long    reserved
+ * </pre>
+ * followed by the records, each consisting of the To, Tb and Tr doubles of a data point as passed to the algorithm
+ * (i.e. before the minimum delay adjustment). All values are big-endian. The header has the same size as a record,
+ * so records never straddle a mapped region. The file may extend past the last record, up to the end of the region
+ * the writer last mapped; only the number of records in the header is significant.
+ */
+final class TraceFormat {
+
+    static final int MAGIC = 0x4D535452;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 24;
+    static final int COUNT_OFFSET = 8;
+
+    private TraceFormat() {
+    }
+
+    static void writeHeader(ByteBuffer header) {
+        header.putInt(0, MAGIC);
+        header.put(4, VERSION);
+        header.putLong(COUNT_OFFSET, 0);
+    }
+
+    /**
+     * @return The number of records in the trace.
+     */
+    static long readHeader(ByteBuffer header) {
+        if (header.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("Not a trace file.");
+        byte version = header.get(4);
+        if (version != VERSION)
+            throw new IllegalArgumentException(String.format("Unsupported trace version %d.", version));
+        return header.getLong(COUNT_OFFSET);
+    }
+}
@@ -0,0 +1,109 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader of trace files written by {@link TraceWriter}.
+ * <p>
+ * The file is memory-mapped in regions of {@value #REGION_RECORDS} records, so traces larger than 2 GB can be read,
+ * and records are read in batches into primitive arrays. This class is not thread-safe.
+ */
+public class TraceReader implements Closeable {
+
+    static final int REGION_RECORDS = 1 << 22;
+
+    private final FileChannel channel;
+    private final long count;
+    private ByteBuffer region;
+    private long region_end; // index of the first record after the current region
+    private long read;
+
+    public TraceReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (this.channel.size() < TraceFormat.HEADER_SIZE)
+                throw new IllegalArgumentException("Not a trace file.");
+            long count = TraceFormat.readHeader(
+                    this.channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceFormat.HEADER_SIZE));
+            // a writer which died before its pages were written back may leave fewer records than counted
+            this.count = Math.min(count,
+                    (this.channel.size() - TraceFormat.HEADER_SIZE) / TraceFormat.RECORD_SIZE);
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+        this.region = ByteBuffer.allocate(0);
+        this.region_end = 0;
+        this.read = 0;
+    }
+
+    /**
+     * @return The total number of data points in the trace.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Reads the next data points into the given arrays.
+     *
+     * @return The number of data points read, at most the length of the arrays; 0 once the end of the trace is
+     * reached.
+     */
+    public int read(double[] To, double[] Tb, double[] Tr) throws IOException {
+        if (Tb.length != To.length || Tr.length != To.length)
+            throw new IllegalArgumentException("To, Tb and Tr must have the same length.");
+
+        int n = 0;
+        while (n < To.length && this.read < this.count) {
+            if (this.read == this.region_end) this.mapNextRegion();
+
+            ByteBuffer region = this.region;
+            int batch = (int) Math.min(To.length - n, this.region_end - this.read);
+            for (int i = n; i < n + batch; ++i) {
+                To[i] = region.getDouble();
+                Tb[i] = region.getDouble();
+                Tr[i] = region.getDouble();
+            }
+            n += batch;
+            this.read += batch;
+        }
+        return n;
+    }
+
+    private void mapNextRegion() throws IOException {
+        long records = Math.min(REGION_RECORDS, this.count - this.read);
+        this.region = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                TraceFormat.HEADER_SIZE + this.read * TraceFormat.RECORD_SIZE,
+                records * TraceFormat.RECORD_SIZE);
+        this.region_end = this.read + records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,81 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.trace;
+
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Replays recorded traces through one or more algorithms at full speed, for instance to reproduce the behaviour of a
+ * deployment or to compare algorithms offline.
+ */
+public final class TraceReplay {
+
+    private static final int BATCH_SIZE = 4096;
+
+    private TraceReplay() {
+    }
+
+    /**
+     * Streams all data points of a trace through the given algorithms. The trace is read only once, in batches, however
+     * many algorithms are given; minimum delays, windows and filters configured on the algorithms apply as usual.
+     * <p>
+     * Each algorithm is fed the data points one by one, so that if it throws an exception, the record which caused it
+     * is known exactly. The algorithm is then no longer fed, while the others carry on until the end of the trace.
+     *
+     * @param trace      Path of the trace file.
+     * @param algorithms Algorithms to feed the data points to.
+     * @return The number of records replayed, and the exceptions thrown by the algorithms with the records which
+     * caused them.
+     */
+    public static ReplayResult replay(Path trace, TimeSyncAlgorithm... algorithms) throws IOException {
+        double[] To = new double[BATCH_SIZE];
+        double[] Tb = new double[BATCH_SIZE];
+        double[] Tr = new double[BATCH_SIZE];
+        TimeSyncAlgorithmException[] failures = new TimeSyncAlgorithmException[algorithms.length];
+        long[] failed_records = new long[algorithms.length];
+        Arrays.fill(failed_records, -1);
+
+        long replayed = 0;
+        try (TraceReader reader = new TraceReader(trace)) {
+            int n;
+            while ((n = reader.read(To, Tb, Tr)) > 0) {
+                for (int a = 0; a < algorithms.length; ++a) {
+                    if (failures[a] != null) continue;
+                    TimeSyncAlgorithm algorithm = algorithms[a];
+                    for (int i = 0; i < n; ++i) {
+                        try {
+                            algorithm.addDataPoint(To[i], Tb[i], Tr[i]);
+                        } catch (TimeSyncAlgorithmException e) {
+                            failures[a] = e;
+                            failed_records[a] = replayed + i;
+                            break;
+                        }
+                    }
+                }
+                replayed += n;
+            }
+        }
+        return new ReplayResult(replayed, failures, failed_records);
+    }
+}
@@ -0,0 +1,112 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only recorder of (To, Tb, Tr) data points, see {@link TraceFormat}.
+ * <p>
+ * The file is written through memory-mapped regions of {@value #REGION_RECORDS} records, so appending a data point
+ * is a few stores to memory; the operating system writes the pages back in the background. The record count in the
+ * header is updated after every record, so a trace remains readable up to the last record even if the process dies
+ * without closing the writer. Use {@link RecordingTimeSyncAlgorithm} to record the data points of an algorithm.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class TraceWriter implements Closeable {
+
+    static final int REGION_RECORDS = 1 << 16;
+    private static final long REGION_SIZE = (long) REGION_RECORDS * TraceFormat.RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer region;
+    private long region_start;
+    private long count;
+
+    /**
+     * Creates a new trace file, replacing any existing file.
+     *
+     * @param path Path of the trace file.
+     */
+    public TraceWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, TraceFormat.HEADER_SIZE);
+            TraceFormat.writeHeader(this.header);
+            this.region_start = TraceFormat.HEADER_SIZE;
+            this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, this.region_start, REGION_SIZE);
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+        this.count = 0;
+    }
+
+    /**
+     * Appends a data point to the trace.
+     */
+    public void append(double To, double Tb, double Tr) throws IOException {
+        if (!this.region.hasRemaining()) {
+            this.region_start += REGION_SIZE;
+            this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, this.region_start, REGION_SIZE);
+        }
+
+        this.region.putDouble(To).putDouble(Tb).putDouble(Tr);
+        this.header.putLong(TraceFormat.COUNT_OFFSET, ++this.count);
+    }
+
+    /**
+     * @return The number of data points recorded so far.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Forces the recorded data points to be written to the storage device.
+     */
+    public void flush() {
+        this.region.force();
+        this.header.force();
+    }
+
+    /**
+     * Flushes the trace and closes the file.
+     * <p>
+     * The file is not trimmed to the recorded data points: the mapped regions stay valid until they are garbage
+     * collected, and truncating a file while parts of it are mapped is undefined on some platforms. The file thus
+     * extends to the end of the last mapped region, and readers rely on the record count in the header instead.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
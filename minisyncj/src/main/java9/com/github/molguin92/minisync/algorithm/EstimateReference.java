@@ -0,0 +1,57 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+package com.github.molguin92.minisync.algorithm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Holds the current estimate of an algorithm, which is written by the ingesting thread and read from any thread.
+ * <p>
+ * This is the Java 9+ implementation from the multi-release JAR, which publishes through release writes and reads
+ * through acquire reads. Unlike a volatile write, a release write needs no full fence, and since
+ * {@link SyncEstimate} is immutable, it is still a safe publication.
+ */
+final class EstimateReference {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(EstimateReference.class, "value", SyncEstimate.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused") // accessed through VALUE
+    private SyncEstimate value;
+
+    EstimateReference(SyncEstimate value) {
+        VALUE.setRelease(this, value);
+    }
+
+    SyncEstimate get() {
+        return (SyncEstimate) VALUE.getAcquire(this);
+    }
+
+    void set(SyncEstimate value) {
+        VALUE.setRelease(this, value);
+    }
+}
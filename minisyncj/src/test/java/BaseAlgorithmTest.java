@@ -17,10 +17,21 @@
  * limitations under the License.                                                                                     *
  **********************************************************************************************************************/
 
+import com.github.molguin92.minisync.algorithm.AlgorithmMetrics;
+import com.github.molguin92.minisync.algorithm.BoundedTime;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
 import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.filter.FeasibilityFilter;
+import com.github.molguin92.minisync.filter.RoundTripFilter;
+import com.github.molguin92.minisync.simulation.ClockModel;
+import com.github.molguin92.minisync.simulation.DelayModel;
+import com.github.molguin92.minisync.simulation.LinkModel;
+import com.github.molguin92.minisync.simulation.SimulatedPeer;
 import org.junit.jupiter.api.Test;
 import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,6 +39,11 @@ import static org.junit.jupiter.api.Assertions.*;
 abstract class BaseAlgorithmTest {
     TimeSyncAlgorithm algo;
 
+    /**
+     * @return A new instance of the algorithm under test which compares every pair of constraints after each data point.
+     */
+    abstract TimeSyncAlgorithm fullScan();
+
     private static double NUM_LOOPS = 50;
     private static double FLOAT_DELTA = 0.001;
 
@@ -68,38 +84,417 @@ abstract class BaseAlgorithmTest {
         assertEquals(expected_offset_error, algo.getOffsetError(), FLOAT_DELTA);
     }
 
-    static double currentTimeMicroSeconds() {
-        return System.nanoTime() / 1000.0d;
+    @Test
+    void estimateSnapshot() throws TimeSyncAlgorithmException {
+        assertSame(SyncEstimate.INITIAL, algo.getEstimate());
+
+        algo.addDataPoint(To, Tbr, Tr);
+        algo.addDataPoint(To, Tbt, Tr);
+        SyncEstimate estimate = algo.getEstimate();
+        assertEquals(algo.getDrift(), estimate.drift);
+        assertEquals(algo.getDriftError(), estimate.driftError);
+        assertEquals(algo.getOffset(), estimate.offset);
+        assertEquals(algo.getOffsetError(), estimate.offsetError);
+        assertEquals(2, estimate.dataPoints);
+        assertEquals(Tr, estimate.timestamp);
     }
 
     @Test
-    void increasingAccuracy() throws TimeSyncAlgorithmException {
-        // errors should always decrease
-        double T0 = currentTimeMicroSeconds();
-        double current_drift_error = Double.MAX_VALUE;
-        double current_offset_error = Double.MAX_VALUE;
-        Random r = new Random(System.nanoTime());
+    void minimalImplementation() throws TimeSyncAlgorithmException {
+        // implementations written against the original interface only provide the basic methods
+        TimeSyncAlgorithm minimal = new TimeSyncAlgorithm() {
+            @Override
+            public void addDataPoint(double To, double Tb, double Tr) throws TimeSyncAlgorithmException {
+                algo.addDataPoint(To, Tb, Tr);
+            }
+
+            @Override
+            public double getDrift() {
+                return algo.getDrift();
+            }
+
+            @Override
+            public double getDriftError() {
+                return algo.getDriftError();
+            }
+
+            @Override
+            public double getOffset() {
+                return algo.getOffset();
+            }
+
+            @Override
+            public double getOffsetError() {
+                return algo.getOffsetError();
+            }
+
+            @Override
+            public int numDataPoints() {
+                return algo.numDataPoints();
+            }
+
+            @Override
+            public void setMinimumDelay(double d) {
+                algo.setMinimumDelay(d);
+            }
+
+            @Override
+            public void setMinimumLocalDelay(double d) {
+                algo.setMinimumLocalDelay(d);
+            }
+
+            @Override
+            public void setMinimumRemoteDelay(double d) {
+                algo.setMinimumRemoteDelay(d);
+            }
+        };
+
+        minimal.addDataPoint(To, Tbr, Tr);
+        minimal.addDataPoint(To, Tbt, Tr);
+        SyncEstimate estimate = minimal.getEstimate();
+        assertEquals(algo.getDrift(), estimate.drift);
+        assertEquals(algo.getDriftError(), estimate.driftError);
+        assertEquals(algo.getOffset(), estimate.offset);
+        assertEquals(algo.getOffsetError(), estimate.offsetError);
+        assertEquals(2, estimate.dataPoints);
+        assertTrue(Double.isNaN(estimate.timestamp));
+
+        assertThrows(UnsupportedOperationException.class, () -> minimal.setTimeWindow(1000));
+        assertThrows(UnsupportedOperationException.class, () -> minimal.setSampleWindow(10));
+        assertThrows(UnsupportedOperationException.class, () -> minimal.addFilter(new RoundTripFilter(5, 0.9)));
+        assertThrows(UnsupportedOperationException.class, () -> minimal.setMetrics(new AlgorithmMetrics()));
+        assertThrows(UnsupportedOperationException.class, minimal::checkpointSize);
+        assertThrows(UnsupportedOperationException.class, () -> minimal.checkpoint(ByteBuffer.allocate(1024)));
+        assertThrows(UnsupportedOperationException.class, () -> minimal.restore(ByteBuffer.allocate(1024)));
+    }
+
+    @Test
+    void translation() throws TimeSyncAlgorithmException {
+        // local = drift * remote + offset
+        double drift = 1.0001;
+        double offset = 1500;
+        Random r = new Random(0);
         for (int i = 0; i < NUM_LOOPS; ++i) {
-            try {
-                Thread.sleep(r.nextInt(10));
-                double To = currentTimeMicroSeconds() - T0;
-                Thread.sleep(r.nextInt(10));
-                double Tb = currentTimeMicroSeconds() - T0;
-                Thread.sleep(r.nextInt(10));
-                double Tr = currentTimeMicroSeconds() - T0;
+            double Tb = 1000.0d * (i + 1);
+            double To = drift * (Tb - 50 - r.nextInt(50)) + offset;
+            double Tr = drift * (Tb + 50 + r.nextInt(50)) + offset;
+            algo.addDataPoint(To, Tb, Tr);
+        }
+
+        double[] remote = {0, 10000, 20000.5, 1e6};
+        double[] local = new double[remote.length];
+        double[] min = new double[remote.length];
+        double[] max = new double[remote.length];
+
+        algo.toLocal(remote, local);
+        algo.toLocalBounds(remote, min, max);
+        for (int i = 0; i < remote.length; ++i) {
+            BoundedTime t = algo.toLocal(remote[i]);
+            assertTrue(t.contains(drift * remote[i] + offset));
+            assertEquals(t.value, local[i]);
+            assertEquals(t.min, min[i]);
+            assertEquals(t.max, max[i]);
+
+            // and back
+            BoundedTime back = algo.toRemote(local[i]);
+            assertEquals(remote[i], back.value, FLOAT_DELTA);
+            assertTrue(algo.toRemote(drift * remote[i] + offset).contains(remote[i]));
+        }
+
+        algo.toRemote(local, remote);
+        algo.toRemoteBounds(local, min, max);
+        for (int i = 0; i < local.length; ++i) {
+            BoundedTime t = algo.toRemote(local[i]);
+            assertEquals(t.value, remote[i]);
+            assertEquals(t.min, min[i]);
+            assertEquals(t.max, max[i]);
+        }
+
+        long[] remote_l = {0, 10000, 1000000};
+        long[] local_l = new long[remote_l.length];
+        algo.toLocal(remote_l, local_l);
+        for (int i = 0; i < remote_l.length; ++i)
+            assertEquals(Math.round(algo.toLocal(remote_l[i]).value), local_l[i]);
+
+        assertThrows(IllegalArgumentException.class, () -> algo.toLocal(remote, new double[1]));
+    }
+
+    @Test
+    void incrementalSelection() throws Exception {
+        // the current constraints stay the tightest for consistent data with non-negative remote timestamps, but not
+        // for negative remote timestamps or a wandering drift, where selection falls back to comparing more pairs
+        Random r = new Random(0);
+        for (int stream = 0; stream < 60; ++stream) {
+            TimeSyncAlgorithm incremental = algo.getClass().getDeclaredConstructor().newInstance();
+            TimeSyncAlgorithm reference = this.fullScan();
+            if (stream % 4 == 3) {
+                incremental.setSampleWindow(10);
+                reference.setSampleWindow(10);
+            }
+
+            double drift = 1 + r.nextGaussian() * 1e-4;
+            double local = r.nextDouble() * 1000;
+            double Tb = stream % 3 == 1 ? -50000 : 0;
+            for (int i = 0; i < 60; ++i) {
+                if (stream % 3 == 2) drift += r.nextGaussian() * 1e-5;
+                Tb += 500 + r.nextDouble() * 1000;
+                local += drift * 1000;
+                double To = local - drift * r.nextDouble() * 100;
+                double Tr = local + drift * r.nextDouble() * 100;
+                incremental.addDataPoint(To, Tb, Tr);
+                reference.addDataPoint(To, Tb, Tr);
+                assertEquals(reference.getEstimate().toString(), incremental.getEstimate().toString());
+            }
+        }
+    }
+
+    @Test
+    void batchIngestion() throws Exception {
+        TimeSyncAlgorithm sequential = algo.getClass().getDeclaredConstructor().newInstance();
+
+        int num_samples = 60;
+        int batch_size = 7;
+        double[] To = new double[num_samples];
+        double[] Tb = new double[num_samples];
+        double[] Tr = new double[num_samples];
+        Random r = new Random(0);
+        for (int i = 0; i < num_samples; ++i) {
+            To[i] = 1000.0d * i;
+            Tb[i] = To[i] + 100 + r.nextInt(100);
+            Tr[i] = Tb[i] + 100 + r.nextInt(100);
+            sequential.addDataPoint(To[i], Tb[i], Tr[i]);
+        }
+
+        TimeSyncAlgorithm ranged = algo.getClass().getDeclaredConstructor().newInstance();
+        for (int i = 0; i < num_samples; i += batch_size) {
+            int end = Math.min(i + batch_size, num_samples);
+            algo.addDataPoints(Arrays.copyOfRange(To, i, end),
+                    Arrays.copyOfRange(Tb, i, end),
+                    Arrays.copyOfRange(Tr, i, end));
+            ranged.addDataPoints(To, Tb, Tr, i, end - i);
+        }
+        assertEquals(algo.getEstimate().toString(), ranged.getEstimate().toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> ranged.addDataPoints(To, Tb, Tr, num_samples - 1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> ranged.addDataPoints(To, Tb, Tr, -1, 1));
 
+        SyncEstimate expected = sequential.getEstimate();
+        SyncEstimate actual = algo.getEstimate();
+        assertEquals(num_samples, algo.numDataPoints());
+        assertEquals(expected.drift, actual.drift);
+        assertEquals(expected.driftError, actual.driftError);
+        assertEquals(expected.offset, actual.offset);
+        assertEquals(expected.offsetError, actual.offsetError);
+        assertEquals(expected.dataPoints, actual.dataPoints);
+        assertEquals(expected.timestamp, actual.timestamp);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> algo.addDataPoints(new double[2], new double[2], new double[1]));
+    }
+
+    @Test
+    void slidingWindow() throws TimeSyncAlgorithmException {
+        // the drift changes halfway through, the windowed estimates should follow it
+        double[] drifts = {1.0001, 1.0003};
+        algo.setSampleWindow(20);
+        algo.setTimeWindow(25000);
+        Random r = new Random(0);
+        double local = 1500;
+        double Tb = 0;
+        for (double drift : drifts) {
+            for (int i = 0; i < NUM_LOOPS; ++i) {
+                Tb += 1000;
+                local += drift * 1000;
+                double To = local + drift * (-50 - r.nextInt(50));
+                double Tr = local + drift * (50 + r.nextInt(50));
                 algo.addDataPoint(To, Tb, Tr);
+            }
+
+            SyncEstimate estimate = algo.getEstimate();
+            assertEquals(drift, estimate.drift, estimate.driftError);
+            assertTrue(algo.toLocal(Tb).contains(local));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> algo.setSampleWindow(1));
+        assertThrows(IllegalArgumentException.class, () -> algo.setTimeWindow(0));
+    }
+
+    @Test
+    void filters() throws TimeSyncAlgorithmException {
+        algo.addFilter(new RoundTripFilter(5, 0.9));
+        algo.addFilter(new FeasibilityFilter());
+
+        double drift = 1.0001;
+        double offset = 1500;
+        Random r = new Random(0);
+        int accepted = 0;
+        for (int i = 0; i < NUM_LOOPS; ++i) {
+            double Tb = 1000.0d * (i + 1);
+            double To = drift * (Tb - 50 - r.nextInt(50)) + offset;
+            double Tr = drift * (Tb + 50 + r.nextInt(50)) + offset;
+            if (i % 10 == 9) Tr += 100000; // congestion
+            int before = algo.numDataPoints();
+            algo.addDataPoint(To, Tb, Tr);
+            if (i % 10 == 9) assertEquals(before, algo.numDataPoints());
+            accepted = algo.numDataPoints();
+        }
+        assertTrue(accepted > 0);
+
+        // reply timestamped before the request was sent would make the constraints infeasible
+        SyncEstimate estimate = algo.getEstimate();
+        double Tb = 1000.0d * (NUM_LOOPS + 1);
+        algo.addDataPoint(drift * Tb + offset + 500, Tb, drift * Tb + offset + 600);
+        assertSame(estimate, algo.getEstimate());
+        assertEquals(accepted, algo.numDataPoints());
+    }
+
+    // the outlier at index 3 is only infeasible given the estimates derived from the data points before it
+    static final double[] FILTERED_To = {0, 1000, 2000, 3000, 4000};
+    static final double[] FILTERED_Tb = {-95, 905, 1905, 3405, 3905};
+    static final double[] FILTERED_Tr = {10, 1010, 2010, 3010, 4010};
+
+    @Test
+    void filteredBatchIngestion() throws Exception {
+        TimeSyncAlgorithm sequential = algo.getClass().getDeclaredConstructor().newInstance();
+        sequential.addFilter(new FeasibilityFilter());
+        for (int i = 0; i < FILTERED_To.length; ++i)
+            sequential.addDataPoint(FILTERED_To[i], FILTERED_Tb[i], FILTERED_Tr[i]);
+        assertEquals(FILTERED_To.length - 1, sequential.numDataPoints());
+
+        // filters see the estimates as of the previous data point, not as of the previous batch
+        algo.addFilter(new FeasibilityFilter());
+        algo.addDataPoints(FILTERED_To, FILTERED_Tb, FILTERED_Tr);
+        assertEquals(sequential.numDataPoints(), algo.numDataPoints());
+        assertEquals(sequential.getEstimate().toString(), algo.getEstimate().toString());
+    }
+
+    @Test
+    void checkpoint() throws Exception {
+        TimeSyncAlgorithm restored = algo.getClass().getDeclaredConstructor().newInstance();
+        ByteBuffer buffer = ByteBuffer.allocate(algo.checkpointSize());
+        algo.checkpoint(buffer);
+        buffer.flip();
+        restored.restore(buffer);
+        assertSame(SyncEstimate.INITIAL, restored.getEstimate());
+
+        Random r = new Random(0);
+        for (int i = 0; i < NUM_LOOPS; ++i) {
+            double To = 1000.0d * i;
+            double Tb = To + 100 + r.nextInt(100);
+            double Tr = Tb + 100 + r.nextInt(100);
+            algo.addDataPoint(To, Tb, Tr);
+
+            if (i == NUM_LOOPS / 2) {
+                restored = algo.getClass().getDeclaredConstructor().newInstance();
+                buffer = ByteBuffer.allocate(algo.checkpointSize());
+                algo.checkpoint(buffer);
+                assertFalse(buffer.hasRemaining());
+                buffer.flip();
+                restored.restore(buffer);
+                assertFalse(buffer.hasRemaining());
+                assertThrows(IllegalStateException.class, () -> algo.restore(ByteBuffer.allocate(0)));
+            } else if (i > NUM_LOOPS / 2) {
+                restored.addDataPoint(To, Tb, Tr);
+            }
+        }
 
-                if (i >= 1) { // algorithm needs at least two points
-                    assertTrue(algo.getDriftError() <= current_drift_error);
-                    assertTrue(algo.getOffsetError() <= current_offset_error);
+        assertEquals(algo.numDataPoints(), restored.numDataPoints());
+        assertEquals(algo.getDrift(), restored.getDrift());
+        assertEquals(algo.getDriftError(), restored.getDriftError());
+        assertEquals(algo.getOffset(), restored.getOffset());
+        assertEquals(algo.getOffsetError(), restored.getOffsetError());
 
-                    current_drift_error = algo.getDriftError();
-                    current_offset_error = algo.getOffsetError();
+        TimeSyncAlgorithm other = algo.getClass().getDeclaredConstructor().newInstance();
+        assertThrows(IllegalArgumentException.class, () -> other.restore(ByteBuffer.allocate(1024)));
+    }
+
+    @Test
+    void windowedCheckpoint() throws Exception {
+        algo.setSampleWindow(10);
+        TimeSyncAlgorithm restored = algo.getClass().getDeclaredConstructor().newInstance();
+        restored.setSampleWindow(10);
+
+        Random r = new Random(0);
+        for (int i = 0; i < 3 * NUM_LOOPS; ++i) {
+            double To = 1000.0d * i;
+            double Tb = To + 100 + r.nextInt(100);
+            double Tr = Tb + 100 + r.nextInt(100);
+            algo.addDataPoint(To, Tb, Tr);
+
+            if (i == 2 * NUM_LOOPS) {
+                ByteBuffer buffer = ByteBuffer.allocate(algo.checkpointSize());
+                algo.checkpoint(buffer);
+                assertFalse(buffer.hasRemaining());
+                buffer.flip();
+
+                // every truncated prefix is rejected
+                for (int length = 0; length < buffer.limit(); ++length) {
+                    ByteBuffer truncated = buffer.duplicate();
+                    truncated.limit(length);
+                    TimeSyncAlgorithm other = algo.getClass().getDeclaredConstructor().newInstance();
+                    assertThrows(IllegalArgumentException.class, () -> other.restore(truncated));
                 }
-            } catch (InterruptedException ignored) {
+
+                restored.restore(buffer);
+                assertFalse(buffer.hasRemaining());
+            } else if (i > 2 * NUM_LOOPS) {
+                // the restored sample window expires the restored points at the same data points as the original
+                restored.addDataPoint(To, Tb, Tr);
+                assertEquals(algo.getEstimate().toString(), restored.getEstimate().toString());
             }
+        }
+    }
+
+    @Test
+    void metrics() throws TimeSyncAlgorithmException {
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        algo.setMetrics(metrics);
+        algo.addFilter((To, Tb, Tr, estimate) -> Tr - To < 1000);
+
+        Random r = new Random(0);
+        for (int i = 0; i < NUM_LOOPS; ++i) {
+            double To = 1000.0d * i;
+            double Tb = To + 100 + r.nextInt(100);
+            double Tr = Tb + 100 + r.nextInt(100);
+            algo.addDataPoint(To, Tb, Tr);
+        }
+        algo.addDataPoint(0, 1e6, 1e4); // rejected by the filter
 
+        assertEquals(NUM_LOOPS, metrics.getDataPoints());
+        assertEquals(1, metrics.getRejectedDataPoints());
+        assertEquals(NUM_LOOPS - 1, metrics.getUpdates());
+        assertTrue(metrics.getDiffFactorImprovements() > 0);
+        assertEquals(2 * NUM_LOOPS, metrics.getLowPoints() + metrics.getHighPoints() + metrics.getPrunedPoints());
+        assertEquals(NUM_LOOPS + 1, metrics.getLatencyCount());
+        assertTrue(metrics.getMedianLatency() <= metrics.getMaxLatency());
+
+        // negative drift
+        assertThrows(TimeSyncAlgorithmException.class, () -> algo.addDataPoint(-1e7, 1e6, -1e7 + 100));
+        assertEquals(1, metrics.getExceptions());
+
+        metrics.reset();
+        assertEquals(0, metrics.getDataPoints());
+        assertEquals(0, metrics.get99thPercentileLatency());
+    }
+
+    @Test
+    void increasingAccuracy() throws TimeSyncAlgorithmException {
+        // errors should always decrease
+        SimulatedPeer peer = new SimulatedPeer(new ClockModel(1.0d, 0.0d),
+                new LinkModel(DelayModel.uniform(0, 10000), DelayModel.uniform(0, 10000), 0.0d, 10000), 0);
+        double current_drift_error = Double.MAX_VALUE;
+        double current_offset_error = Double.MAX_VALUE;
+        double[] sample = new double[3];
+        for (int i = 0; i < NUM_LOOPS; ++i) {
+            assertTrue(peer.probe(sample));
+            algo.addDataPoint(sample[0], sample[1], sample[2]);
+
+            if (i >= 1) { // algorithm needs at least two points
+                assertTrue(algo.getDriftError() <= current_drift_error);
+                assertTrue(algo.getOffsetError() <= current_offset_error);
+
+                current_drift_error = algo.getDriftError();
+                current_offset_error = algo.getOffsetError();
+            }
         }
     }
 }
@@ -0,0 +1,150 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.BoundedTime;
+import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.manager.ClockGraph;
+import com.github.molguin92.minisync.manager.ClockPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockGraphTest {
+
+    // clocks of the nodes as functions of true time
+    private static final double[] DRIFT = {1.0d, 1.0001d, 0.9998d, 1.00005d};
+    private static final double[] OFFSET = {0.0d, 500.0d, -300.0d, 12000.0d};
+    private static final int ROOT = 0;
+    private static final int GATEWAY = 1;
+    private static final int LEAF = 2;
+    private static final int OTHER_LEAF = 3;
+
+    private static double clock(int node, double t) {
+        return DRIFT[node] * t + OFFSET[node];
+    }
+
+    /**
+     * Feeds a probe exchange from local to remote at true time t to the algorithm.
+     */
+    private static void probe(TimeSyncAlgorithm algo, int local, int remote, double t, Random r)
+            throws TimeSyncAlgorithmException {
+        double To = clock(local, t);
+        double Tb = clock(remote, t + 50 + r.nextInt(100));
+        double Tr = clock(local, t + 200 + r.nextInt(100));
+        algo.addDataPoint(To, Tb, Tr);
+    }
+
+    @Test
+    void multiHop() throws TimeSyncAlgorithmException {
+        TimeSyncAlgorithm gateway_root = new MiniSyncAlgorithm();
+        TimeSyncAlgorithm leaf_gateway = new MiniSyncAlgorithm();
+        TimeSyncAlgorithm other_gateway = new MiniSyncAlgorithm();
+        ClockGraph<Integer> graph = new ClockGraph<>();
+        graph.addLink(GATEWAY, ROOT, gateway_root);
+        graph.addLink(LEAF, GATEWAY, leaf_gateway);
+        graph.addLink(OTHER_LEAF, GATEWAY, other_gateway);
+        assertThrows(IllegalArgumentException.class, () -> graph.addLink(ROOT, GATEWAY, gateway_root));
+        assertThrows(IllegalArgumentException.class, () -> graph.path(ROOT, ROOT));
+        assertThrows(IllegalArgumentException.class, () -> graph.path(ROOT, 42));
+
+        Random r = new Random(19);
+        double t = 0;
+        for (int i = 0; i < 100; ++i) {
+            t += 10000;
+            probe(gateway_root, GATEWAY, ROOT, t, r);
+            probe(leaf_gateway, LEAF, GATEWAY, t + 1000, r);
+            probe(other_gateway, OTHER_LEAF, GATEWAY, t + 2000, r);
+        }
+
+        ClockPath path = graph.path(LEAF, ROOT);
+        assertEquals(2, path.length());
+        assertEquals(2, graph.path(OTHER_LEAF, LEAF).length());
+        assertEquals(1, graph.path(ROOT, GATEWAY).length());
+
+        // translations in every direction contain the true time of an event on the destination clock
+        for (double event = 0; event < 1.5e6; event += 12345) {
+            for (int from = 0; from < DRIFT.length; ++from) {
+                for (int to = 0; to < DRIFT.length; ++to) {
+                    if (from == to) continue;
+                    BoundedTime translated = graph.translate(from, to, clock(from, event));
+                    assertTrue(translated.contains(clock(to, event)), from + " -> " + to + ": " + translated);
+                    assertTrue(translated.max - translated.min < 2000, from + " -> " + to + ": " + translated);
+                }
+            }
+        }
+
+        // the composed estimate is cached until a link estimate changes
+        SyncEstimate estimate = path.getEstimate();
+        assertSame(estimate, graph.getEstimate(LEAF, ROOT));
+        assertEquals(DRIFT[ROOT] / DRIFT[LEAF], estimate.drift, estimate.driftError);
+        assertTrue(estimate.dataPoints > 1 && estimate.dataPoints <= 100);
+        SyncEstimate link = gateway_root.getEstimate();
+        while (gateway_root.getEstimate() == link) {
+            t += 10000;
+            probe(gateway_root, GATEWAY, ROOT, t, r);
+        }
+        assertNotSame(estimate, path.getEstimate());
+        assertSame(path, graph.path(LEAF, ROOT));
+
+        double[] events = {clock(LEAF, 1e5), clock(LEAF, 2e5)};
+        double[] translated = new double[2];
+        path.translate(events, translated);
+        assertEquals(path.translate(events[1]).value, translated[1]);
+
+        assertTrue(graph.removeLink(GATEWAY, ROOT));
+        assertFalse(graph.removeLink(GATEWAY, ROOT));
+        assertThrows(IllegalStateException.class, path::getEstimate);
+        assertThrows(IllegalArgumentException.class, () -> graph.translate(LEAF, ROOT, 0));
+        assertNotNull(graph.translate(LEAF, OTHER_LEAF, 0));
+    }
+
+    @Test
+    void removeLinkAfterAddLink() throws TimeSyncAlgorithmException {
+        TimeSyncAlgorithm gateway_root = new MiniSyncAlgorithm();
+        TimeSyncAlgorithm leaf_gateway = new MiniSyncAlgorithm();
+        ClockGraph<Integer> graph = new ClockGraph<>();
+        graph.addLink(GATEWAY, ROOT, gateway_root);
+        graph.addLink(LEAF, GATEWAY, leaf_gateway);
+
+        Random r = new Random(19);
+        for (int i = 1; i <= 10; ++i) {
+            probe(gateway_root, GATEWAY, ROOT, i * 10000, r);
+            probe(leaf_gateway, LEAF, GATEWAY, i * 10000 + 1000, r);
+        }
+        ClockPath through = graph.path(GATEWAY, ROOT);
+        ClockPath other = graph.path(LEAF, GATEWAY);
+
+        // an unrelated link clears the cache, but the paths obtained before it still belong to their links
+        graph.addLink(OTHER_LEAF, GATEWAY, new MiniSyncAlgorithm());
+        assertTrue(graph.removeLink(GATEWAY, ROOT));
+        assertThrows(IllegalStateException.class, through::getEstimate);
+
+        // paths which do not go through the removed link remain valid, and stay cached
+        assertNotNull(other.getEstimate());
+        ClockPath cached = graph.path(LEAF, GATEWAY);
+        assertTrue(graph.removeLink(OTHER_LEAF, GATEWAY));
+        assertSame(cached, graph.path(LEAF, GATEWAY));
+        assertNotNull(cached.getEstimate());
+    }
+}
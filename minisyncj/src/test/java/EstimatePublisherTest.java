@@ -0,0 +1,161 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.publisher.EstimatePublisher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EstimatePublisherTest {
+
+    private static final double OFFSET_THRESHOLD = 10;
+
+    /**
+     * Records every signal, requesting estimates as configured.
+     */
+    private static class RecordingSubscriber implements EstimatePublisher.Subscriber {
+        final List<SyncEstimate> estimates = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        final long initial_request;
+        EstimatePublisher.Subscription subscription;
+        Throwable error;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initial_request = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(EstimatePublisher.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.initial_request > 0) subscription.request(this.initial_request);
+        }
+
+        @Override
+        public void onNext(SyncEstimate estimate) {
+            this.estimates.add(estimate);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed.countDown();
+        }
+    }
+
+    private static int feed(EstimatePublisher publisher, int start, int samples) throws TimeSyncAlgorithmException {
+        Random r = new Random(22 + start);
+        int changes = 0;
+        for (int i = start; i < start + samples; ++i) {
+            SyncEstimate previous = publisher.getEstimate();
+            double To = i * 1000.0d;
+            double Tb = To + 100 + r.nextInt(100);
+            double Tr = Tb + 100 + r.nextInt(100);
+            publisher.addDataPoint(To, Tb, Tr);
+            if (publisher.getEstimate() != previous) ++changes;
+        }
+        return changes;
+    }
+
+    @Test
+    void thresholds() throws TimeSyncAlgorithmException {
+        // deliver on the calling thread
+        EstimatePublisher publisher = new EstimatePublisher(new MiniSyncAlgorithm(), 1, OFFSET_THRESHOLD, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        int changes = feed(publisher, 0, 200);
+
+        assertTrue(subscriber.estimates.size() > 1);
+        assertTrue(subscriber.estimates.size() < changes);
+        for (int i = 1; i < subscriber.estimates.size(); ++i) {
+            SyncEstimate previous = subscriber.estimates.get(i - 1);
+            SyncEstimate estimate = subscriber.estimates.get(i);
+            assertTrue(Math.abs(estimate.offset - previous.offset) > OFFSET_THRESHOLD ||
+                    Math.abs(estimate.offsetError - previous.offsetError) > OFFSET_THRESHOLD);
+        }
+
+        publisher.close();
+        assertEquals(0, subscriber.completed.getCount());
+        assertEquals(0, publisher.numSubscribers());
+        assertThrows(IllegalStateException.class, () -> publisher.subscribe(new RecordingSubscriber(1)));
+    }
+
+    @Test
+    void conflation() throws TimeSyncAlgorithmException {
+        EstimatePublisher publisher = new EstimatePublisher(new MiniSyncAlgorithm(), 0, 0, Runnable::run);
+        RecordingSubscriber slow = new RecordingSubscriber(0);
+        publisher.subscribe(slow);
+        feed(publisher, 0, 100);
+        assertTrue(slow.estimates.isEmpty());
+
+        // only the latest estimate is delivered, once
+        slow.subscription.request(5);
+        assertEquals(1, slow.estimates.size());
+        assertSame(publisher.getEstimate(), slow.estimates.get(0));
+
+        // new subscribers receive the last published estimate
+        RecordingSubscriber late = new RecordingSubscriber(1);
+        publisher.subscribe(late);
+        assertSame(publisher.getEstimate(), late.estimates.get(0));
+
+        // the remaining demand is used by the next estimates
+        feed(publisher, 100, 100);
+        assertTrue(slow.estimates.size() > 1 && slow.estimates.size() <= 5);
+        assertEquals(1, late.estimates.size());
+
+        RecordingSubscriber invalid = new RecordingSubscriber(0);
+        publisher.subscribe(invalid);
+        invalid.subscription.request(0);
+        assertTrue(invalid.error instanceof IllegalArgumentException);
+
+        slow.subscription.cancel();
+        assertEquals(1, publisher.numSubscribers());
+    }
+
+    @Test
+    void asynchronous() throws Exception {
+        EstimatePublisher publisher = new EstimatePublisher(new MiniSyncAlgorithm(), 0, 0);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE) {
+            @Override
+            public void onNext(SyncEstimate estimate) {
+                assertNotEquals(Thread.currentThread().getName(), "main");
+                super.onNext(estimate);
+            }
+        };
+        publisher.subscribe(subscriber);
+        feed(publisher, 0, 100);
+        publisher.close();
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertSame(publisher.getEstimate(), subscriber.estimates.get(subscriber.estimates.size() - 1));
+    }
+}
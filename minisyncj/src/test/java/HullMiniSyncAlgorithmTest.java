@@ -0,0 +1,154 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.HullMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.constraint.LineMath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HullMiniSyncAlgorithmTest extends BaseAlgorithmTest {
+    @BeforeEach
+    void setUp() {
+        this.algo = new HullMiniSyncAlgorithm();
+    }
+
+    @Override
+    TimeSyncAlgorithm fullScan() {
+        HullMiniSyncAlgorithm full_scan = new HullMiniSyncAlgorithm();
+        full_scan.setIncrementalSelection(false);
+        return full_scan;
+    }
+
+    @Test
+    void exhaustiveEquivalence() throws TimeSyncAlgorithmException {
+        // with non-negative remote timestamps and data points consistent with a constant drift, the hull engines select
+        // the same constraints as an exhaustive scan over all data points seen, even though they discard points
+        Random r = new Random(0);
+        for (int stream = 0; stream < 200; ++stream) {
+            TimeSyncAlgorithm[] engines = {new HullMiniSyncAlgorithm(), new PrimitiveMiniSyncAlgorithm()};
+            ExhaustiveScan reference = new ExhaustiveScan();
+
+            double drift = 1 + r.nextGaussian() * 1e-4;
+            double offset = r.nextGaussian() * 1000;
+            double Tb = r.nextDouble() * 1000;
+            for (int i = 0; i < 40; ++i) {
+                Tb += 500 + r.nextDouble() * 1000;
+                double To = drift * (Tb - r.nextDouble() * 100) + offset;
+                double Tr = drift * (Tb + r.nextDouble() * 100) + offset;
+                reference.add(To, Tb, Tr);
+                for (TimeSyncAlgorithm engine : engines) {
+                    engine.addDataPoint(To, Tb, Tr);
+                    if (i == 0) continue;
+
+                    SyncEstimate estimate = engine.getEstimate();
+                    assertEquals(reference.drift(), estimate.drift);
+                    assertEquals(reference.driftError(), estimate.driftError);
+                    assertEquals(reference.offset(), estimate.offset);
+                    assertEquals(reference.offsetError(), estimate.offsetError);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reference selection: the pair with the lowest diff_factor among all low x high constraint pairs through every
+     * data point added so far, with constraints computed as by {@link com.github.molguin92.minisync.constraint.Line}.
+     * No point is ever discarded; since older pairs have already been compared, each data point only requires the
+     * pairs including one of its constraints to be compared.
+     */
+    private static final class ExhaustiveScan {
+        private final List<double[]> low_points = new ArrayList<>(); // {x, y}
+        private final List<double[]> high_points = new ArrayList<>();
+        private final List<double[]> low_constraints = new ArrayList<>(); // {A, B}
+        private final List<double[]> high_constraints = new ArrayList<>();
+        private double diff_factor = Double.MAX_VALUE;
+        private double[] low;
+        private double[] high;
+
+        void add(double To, double Tb, double Tr) {
+            double[] lp = {Tb, To};
+            double[] hp = {Tb, Tr};
+            this.low_points.add(lp);
+            this.high_points.add(hp);
+
+            List<double[]> new_low = new ArrayList<>();
+            List<double[]> new_high = new ArrayList<>();
+            for (double[] p : this.high_points)
+                this.addConstraint(lp, p, new_low, new_high);
+            for (double[] p : this.low_points)
+                this.addConstraint(p, hp, new_low, new_high);
+
+            for (double[] l : new_low)
+                for (double[] h : this.high_constraints)
+                    this.evaluate(l, h);
+            for (double[] h : new_high)
+                for (double[] l : this.low_constraints)
+                    this.evaluate(l, h);
+        }
+
+        private void addConstraint(double[] lp, double[] hp, List<double[]> new_low, List<double[]> new_high) {
+            if (lp[0] == hp[0]) return;
+
+            double A = (lp[1] - hp[1]) / (lp[0] - hp[0]);
+            double[] constraint = {A, LineMath.intercept(A, lp[0], lp[1])};
+            if (lp[0] < hp[0]) {
+                this.low_constraints.add(constraint);
+                new_low.add(constraint);
+            } else {
+                this.high_constraints.add(constraint);
+                new_high.add(constraint);
+            }
+        }
+
+        private void evaluate(double[] l, double[] h) {
+            double diff = (l[0] - h[0]) * (h[1] - l[1]);
+            if (diff < this.diff_factor) {
+                this.diff_factor = diff;
+                this.low = l;
+                this.high = h;
+            }
+        }
+
+        double drift() {
+            return (this.low[0] + this.high[0]) / 2;
+        }
+
+        double driftError() {
+            return (this.low[0] - this.high[0]) / 2;
+        }
+
+        double offset() {
+            return (this.low[1] + this.high[1]) / 2;
+        }
+
+        double offsetError() {
+            return (this.high[1] - this.low[1]) / 2;
+        }
+    }
+}
\ No newline at end of file
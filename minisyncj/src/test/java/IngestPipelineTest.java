@@ -0,0 +1,157 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.manager.IngestPipeline;
+import com.github.molguin92.minisync.simulation.ClockModel;
+import com.github.molguin92.minisync.simulation.DelayModel;
+import com.github.molguin92.minisync.simulation.LinkModel;
+import com.github.molguin92.minisync.simulation.SimulatedPeer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestPipelineTest {
+
+    private static final int NUM_SAMPLES = 4000;
+    private static final ClockModel CLOCK = new ClockModel(1.00003d, 2000);
+    private static final LinkModel LINK = new LinkModel(DelayModel.uniform(100, 300), 10000);
+
+    private static double[][] samples(SimulatedPeer peer) {
+        double[][] samples = new double[NUM_SAMPLES][3];
+        for (double[] sample : samples) peer.probe(sample);
+        return samples;
+    }
+
+    @Test
+    void singleProducer() throws Exception {
+        SimulatedPeer peer = new SimulatedPeer(CLOCK, LINK, 24);
+        double[][] samples = samples(peer);
+        PrimitiveMiniSyncAlgorithm expected = new PrimitiveMiniSyncAlgorithm();
+        for (double[] sample : samples) expected.addDataPoint(sample[0], sample[1], sample[2]);
+
+        PrimitiveMiniSyncAlgorithm algo = new PrimitiveMiniSyncAlgorithm();
+        try (IngestPipeline pipeline = new IngestPipeline(algo, 100)) {
+            assertEquals(128, pipeline.getCapacity());
+            for (double[] sample : samples)
+                while (!pipeline.offer(sample[0], sample[1], sample[2])) Thread.yield();
+            pipeline.flush();
+
+            // batches produce the same estimates as the data points one by one, in order
+            assertEquals(NUM_SAMPLES, pipeline.numDrained());
+            assertEquals(expected.getEstimate().toString(), algo.getEstimate().toString());
+            assertNull(pipeline.getLastError());
+        }
+    }
+
+    @Test
+    void concurrentProducers() throws Exception {
+        final int producers = 8;
+        SimulatedPeer peer = new SimulatedPeer(CLOCK, LINK, 24);
+        double[][] samples = samples(peer);
+        PrimitiveMiniSyncAlgorithm expected = new PrimitiveMiniSyncAlgorithm();
+        for (double[] sample : samples) expected.addDataPoint(sample[0], sample[1], sample[2]);
+
+        PrimitiveMiniSyncAlgorithm algo = new PrimitiveMiniSyncAlgorithm();
+        IngestPipeline pipeline = new IngestPipeline(algo, 16);
+        AtomicInteger turn = new AtomicInteger(0);
+
+        // the producers take turns so that the data points are offered in order, each from a different thread
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < producers; ++t) {
+            final int first = t;
+            Thread thread = new Thread(() -> {
+                for (int i = first; i < NUM_SAMPLES; i += producers) {
+                    while (turn.get() != i) Thread.yield();
+                    while (!pipeline.offer(samples[i][0], samples[i][1], samples[i][2])) Thread.yield();
+                    turn.set(i + 1);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+        pipeline.flush();
+
+        assertEquals(NUM_SAMPLES, pipeline.numDrained());
+        assertEquals(expected.getEstimate().toString(), algo.getEstimate().toString());
+        assertNull(pipeline.getLastError());
+
+        pipeline.close();
+        assertThrows(IllegalStateException.class, () -> pipeline.offer(0, 0, 0));
+    }
+
+    @Test
+    void wakeUps() throws Exception {
+        SimulatedPeer peer = new SimulatedPeer(CLOCK, LINK, 24);
+        double[][] samples = samples(peer);
+        PrimitiveMiniSyncAlgorithm algo = new PrimitiveMiniSyncAlgorithm();
+
+        // without flush(), each data point is only drained if its producer wakes up the parked writer
+        try (IngestPipeline pipeline = new IngestPipeline(algo, 4)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int i = 0; i < 500; ++i) {
+                    assertTrue(pipeline.offer(samples[i][0], samples[i][1], samples[i][2]));
+                    while (pipeline.numDrained() <= i) Thread.yield();
+                    if (i % 10 == 0) Thread.sleep(1);
+                }
+            });
+        }
+    }
+
+    @Test
+    void fullRingAndErrors() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        MiniSyncAlgorithm algo = new MiniSyncAlgorithm();
+        IngestPipeline pipeline = new IngestPipeline(algo, 4, r -> new Thread(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            r.run();
+        }));
+
+        // the writer is held back, so the ring fills up
+        for (int i = 0; i < 4; ++i)
+            assertTrue(pipeline.offer(i * 1000.0d, i * 1000.0d + 100, i * 1000.0d + 200));
+        assertFalse(pipeline.offer(4000, 4100, 4200));
+        assertEquals(1, pipeline.numRejected());
+
+        start.countDown();
+        pipeline.flush();
+
+        // a data point which implies a negative drift fails its batch, but the pipeline keeps going
+        assertTrue(pipeline.offer(-1e7, 5e6, -1e7 + 100));
+        pipeline.flush();
+        assertEquals(1, pipeline.numFailedBatches());
+        assertTrue(pipeline.getLastError() instanceof TimeSyncAlgorithmException);
+        assertEquals(5, pipeline.numDrained());
+        assertEquals(5, algo.numDataPoints());
+        pipeline.close();
+    }
+}
@@ -17,14 +17,148 @@
  * limitations under the License.                                                                                     *
  **********************************************************************************************************************/
 
+import com.github.molguin92.minisync.algorithm.AlgorithmMetrics;
 import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.filter.FeasibilityFilter;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class MiniSyncAlgorithmTest extends BaseAlgorithmTest {
     @BeforeEach
     void setUp() {
         this.algo = new MiniSyncAlgorithm();
     }
-}
\ No newline at end of file
+
+    @Override
+    TimeSyncAlgorithm fullScan() {
+        MiniSyncAlgorithm full_scan = new MiniSyncAlgorithm();
+        full_scan.setIncrementalSelection(false);
+        return full_scan;
+    }
+
+    @Test
+    void retainedPointCap() throws TimeSyncAlgorithmException {
+        final int cap = 8;
+        MiniSyncAlgorithm minisync = (MiniSyncAlgorithm) this.algo;
+        assertThrows(IllegalArgumentException.class, () -> minisync.setMaxRetainedPoints(2));
+        assertThrows(IllegalArgumentException.class, () -> minisync.setMaxRetainedPoints(-1));
+
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        minisync.setMetrics(metrics);
+        minisync.setMaxRetainedPoints(cap);
+
+        // slowly wandering delays keep many points on the hulls, which is where an uncapped MiniSync grows
+        final double drift = 1.00002;
+        Random r = new Random(17);
+        double local = 1500;
+        double Tb = 0;
+        for (int i = 0; i < 4000; ++i) {
+            Tb += 1000;
+            local += drift * 1000;
+            double To = local - drift * (100 + 50 * Math.sin(i / 50.0) + r.nextDouble());
+            double Tr = local + drift * (100 + 50 * Math.cos(i / 70.0) + r.nextDouble());
+            minisync.addDataPoint(To, Tb, Tr);
+
+            assertTrue(metrics.getLowPoints() <= cap);
+            assertTrue(metrics.getHighPoints() <= cap);
+            assertTrue(metrics.getLowConstraints() <= cap * cap);
+            assertTrue(metrics.getHighConstraints() <= cap * cap);
+            if (i > 0) assertTrue(minisync.toLocal(Tb).contains(local));
+        }
+
+        assertEquals(drift, minisync.getDrift(), minisync.getDriftError());
+        assertTrue(metrics.getEvictedPoints() > 0);
+        assertTrue(metrics.getMaxEvictionLoosening() >= 0);
+    }
+
+    @Test
+    void parallelScan() throws TimeSyncAlgorithmException {
+        MiniSyncAlgorithm sequential = new MiniSyncAlgorithm();
+        MiniSyncAlgorithm parallel = (MiniSyncAlgorithm) this.algo;
+        sequential.setParallelThreshold(Long.MAX_VALUE);
+        parallel.setParallelThreshold(1);
+        assertThrows(IllegalArgumentException.class, () -> parallel.setParallelThreshold(0));
+
+        // the window forces full scans whenever the current constraints expire
+        sequential.setSampleWindow(300);
+        parallel.setSampleWindow(300);
+
+        Random r = new Random(18);
+        double local = 1500;
+        double Tb = 0;
+        for (int i = 0; i < 1000; ++i) {
+            Tb += 1000;
+            local += 1.00002 * 1000;
+            double To = local - (100 + 50 * Math.sin(i / 50.0) + r.nextDouble());
+            double Tr = local + (100 + 50 * Math.cos(i / 70.0) + r.nextDouble());
+            sequential.addDataPoint(To, Tb, Tr);
+            parallel.addDataPoint(To, Tb, Tr);
+
+            assertEquals(sequential.getDrift(), parallel.getDrift());
+            assertEquals(sequential.getDriftError(), parallel.getDriftError());
+            assertEquals(sequential.getOffset(), parallel.getOffset());
+            assertEquals(sequential.getOffsetError(), parallel.getOffsetError());
+        }
+    }
+
+    @Test
+    void lazyUpdates() throws TimeSyncAlgorithmException {
+        MiniSyncAlgorithm eager = new MiniSyncAlgorithm();
+        MiniSyncAlgorithm lazy = (MiniSyncAlgorithm) this.algo;
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        lazy.setMetrics(metrics);
+        lazy.setLazyUpdates(50);
+        assertThrows(IllegalArgumentException.class, () -> lazy.setLazyUpdates(-1));
+
+        Random r = new Random(20);
+        double local = 1500;
+        double Tb = 0;
+        for (int i = 0; i < 1000; ++i) {
+            Tb += 1000;
+            local += 1.00002 * 1000;
+            double To = local - (100 + r.nextInt(100));
+            double Tr = local + (100 + r.nextInt(100));
+            eager.addDataPoint(To, Tb, Tr);
+            lazy.addDataPoint(To, Tb, Tr);
+
+            if (i % 37 == 36) {
+                assertEquals(eager.getEstimate().toString(), lazy.getEstimate().toString());
+                assertTrue(lazy.toLocal(Tb).contains(local));
+            }
+        }
+
+        assertEquals(eager.numDataPoints(), lazy.numDataPoints());
+        assertEquals(eager.getEstimate().toString(), lazy.getEstimate().toString());
+        assertEquals(999, metrics.getUpdates());
+        assertEquals(1000, metrics.getLatencyCount());
+
+        // exceptions are thrown by the read which processes the data point
+        lazy.addDataPoint(-1e7, Tb + 1e6, -1e7 + 100);
+        IllegalStateException e = assertThrows(IllegalStateException.class, lazy::getDrift);
+        assertTrue(e.getCause() instanceof TimeSyncAlgorithmException);
+        assertTrue(lazy.getDrift() < 0);
+        assertEquals(1, metrics.getExceptions());
+    }
+
+    @Test
+    void lazyUpdatesWithFilters() throws TimeSyncAlgorithmException {
+        MiniSyncAlgorithm eager = new MiniSyncAlgorithm();
+        MiniSyncAlgorithm lazy = (MiniSyncAlgorithm) this.algo;
+        eager.addFilter(new FeasibilityFilter());
+        lazy.addFilter(new FeasibilityFilter());
+        lazy.setLazyUpdates(100);
+
+        for (int i = 0; i < FILTERED_To.length; ++i) {
+            eager.addDataPoint(FILTERED_To[i], FILTERED_Tb[i], FILTERED_Tr[i]);
+            lazy.addDataPoint(FILTERED_To[i], FILTERED_Tb[i], FILTERED_Tr[i]);
+        }
+        assertEquals(eager.numDataPoints(), lazy.numDataPoints());
+        assertEquals(eager.getEstimate().toString(), lazy.getEstimate().toString());
+    }
+}
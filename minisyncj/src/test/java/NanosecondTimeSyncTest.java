@@ -0,0 +1,84 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.NanosecondTimeSync;
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NanosecondTimeSyncTest {
+
+    private static final int NUM_SAMPLES = 1000;
+    private static final long EPOCH = 1_700_000_000_000_000_000L; // nanoseconds since the epoch, around 2023
+    private static final long OFFSET = 123_456_789L;
+    private static final double DRIFT = 1.00005;
+
+    // exact local time corresponding to a remote timestamp
+    private static long local(long remote) {
+        long elapsed = remote - EPOCH;
+        return EPOCH + OFFSET + elapsed + Math.round((DRIFT - 1) * elapsed);
+    }
+
+    @Test
+    void epochTimestamps() throws TimeSyncAlgorithmException {
+        NanosecondTimeSync sequential = new NanosecondTimeSync(new PrimitiveMiniSyncAlgorithm());
+        NanosecondTimeSync batched = new NanosecondTimeSync(new PrimitiveMiniSyncAlgorithm());
+
+        long[] To = new long[NUM_SAMPLES];
+        long[] Tb = new long[NUM_SAMPLES];
+        long[] Tr = new long[NUM_SAMPLES];
+        Random r = new Random(0);
+        for (int i = 0; i < NUM_SAMPLES; ++i) {
+            Tb[i] = EPOCH + i * 1_000_000L; // every millisecond
+            To[i] = local(Tb[i]) - 20_000 - r.nextInt(20_000);
+            Tr[i] = local(Tb[i]) + 20_000 + r.nextInt(20_000);
+            sequential.addDataPoint(To[i], Tb[i], Tr[i]);
+        }
+        batched.addDataPoints(To, Tb, Tr);
+
+        assertEquals(To[0], sequential.getLocalOrigin());
+        assertEquals(Tb[0], sequential.getRemoteOrigin());
+
+        for (long remote = EPOCH; remote < EPOCH + NUM_SAMPLES * 1_000_000L; remote += 12_345_678L) {
+            long local = sequential.toLocalNanos(remote);
+            long error = sequential.localErrorNanos(remote);
+            assertTrue(Math.abs(local - local(remote)) <= error + 1);
+            assertTrue(error < 80_000); // never looser than the largest round-trip time
+            assertEquals(local, batched.toLocalNanos(remote));
+
+            // sub-microsecond round trip, which would not be possible with epoch-scale doubles
+            assertEquals(remote, sequential.toRemoteNanos(local), 2);
+        }
+    }
+
+    @Test
+    void fixedOrigin() throws TimeSyncAlgorithmException {
+        NanosecondTimeSync sync = new NanosecondTimeSync(new PrimitiveMiniSyncAlgorithm(), EPOCH, EPOCH);
+        assertEquals(EPOCH + 42, sync.toLocalNanos(EPOCH + 42)); // no estimates yet
+
+        sync.addDataPoint(EPOCH + 10, EPOCH + 20, EPOCH + 30);
+        sync.addDataPoint(EPOCH + 1010, EPOCH + 1020, EPOCH + 1030);
+        assertEquals(EPOCH, sync.getLocalOrigin());
+        assertEquals(EPOCH + 2020, sync.toLocalNanos(EPOCH + 2020));
+    }
+}
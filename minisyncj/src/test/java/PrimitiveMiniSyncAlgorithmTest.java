@@ -0,0 +1,94 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.AlgorithmMetrics;
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PrimitiveMiniSyncAlgorithmTest extends BaseAlgorithmTest {
+    @BeforeEach
+    void setUp() {
+        this.algo = new PrimitiveMiniSyncAlgorithm();
+    }
+
+    @Override
+    TimeSyncAlgorithm fullScan() {
+        PrimitiveMiniSyncAlgorithm full_scan = new PrimitiveMiniSyncAlgorithm();
+        full_scan.setIncrementalSelection(false);
+        return full_scan;
+    }
+
+    // upper bound for the size of a SyncEstimate instance
+    private static final long ESTIMATE_SIZE = 64;
+
+    @Test
+    void noAllocationInSteadyState() throws TimeSyncAlgorithmException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mxBean.isThreadAllocatedMemorySupported());
+        mxBean.setThreadAllocatedMemoryEnabled(true);
+
+        int warmup = 20000;
+        int measured = 20000;
+        double[] To = new double[warmup + measured];
+        double[] Tb = new double[warmup + measured];
+        double[] Tr = new double[warmup + measured];
+        Random r = new Random(0);
+        for (int i = 0; i < To.length; ++i) {
+            To[i] = i * 1000.0d;
+            Tb[i] = To[i] + 100 + r.nextDouble() * 50;
+            Tr[i] = Tb[i] + 100 + r.nextDouble() * 50;
+        }
+
+        this.algo.setMetrics(new AlgorithmMetrics()); // recording metrics must not allocate either
+        for (int i = 0; i < warmup; ++i)
+            this.algo.addDataPoint(To[i], Tb[i], Tr[i]);
+
+        long tid = Thread.currentThread().getId();
+        // calibrate for the allocations of the measurement itself
+        long before = mxBean.getThreadAllocatedBytes(tid);
+        long overhead = mxBean.getThreadAllocatedBytes(tid) - before;
+
+        // the only allocations allowed are the snapshots published when the estimates change
+        int published = 0;
+        SyncEstimate estimate = this.algo.getEstimate();
+        before = mxBean.getThreadAllocatedBytes(tid);
+        for (int i = warmup; i < warmup + measured; ++i) {
+            this.algo.addDataPoint(To[i], Tb[i], Tr[i]);
+            if (this.algo.getEstimate() != estimate) {
+                estimate = this.algo.getEstimate();
+                ++published;
+            }
+        }
+        long allocated = mxBean.getThreadAllocatedBytes(tid) - before - overhead;
+
+        assertTrue(allocated <= published * ESTIMATE_SIZE,
+                String.format("%d bytes allocated for %d published estimates", allocated, published));
+    }
+}
@@ -0,0 +1,180 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.manager.ProbeScheduler;
+import com.github.molguin92.minisync.manager.SyncManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProbeSchedulerTest {
+
+    private static final long MIN_INTERVAL = 1;
+    private static final long MAX_INTERVAL = 32;
+
+    @Test
+    void adaptiveInterval() {
+        SyncManager<String> manager = new SyncManager<>();
+        ManualTimer timer = new ManualTimer();
+        Random r = new Random(0);
+
+        // simulated probe exchange: the quiet peer has an almost constant delay, the noisy one up to 100 ms of jitter
+        ProbeScheduler.Prober<String> prober = peer -> {
+            double forward = peer.equals("noisy") ? r.nextInt(100000) : r.nextDouble();
+            double backward = peer.equals("noisy") ? r.nextInt(100000) : r.nextDouble();
+            double To = timer.now() / 1000.0d;
+            manager.addDataPoint(peer, To, To + 100 + forward, To + 200 + forward + backward);
+        };
+
+        // probes run on the timer thread, i.e. on the test thread while the timer is advanced
+        try (ProbeScheduler<String> scheduler = new ProbeScheduler<>(manager, prober, 150,
+                MIN_INTERVAL, MAX_INTERVAL, TimeUnit.MILLISECONDS, timer, Runnable::run)) {
+            scheduler.schedule("quiet");
+            scheduler.schedule("noisy");
+            timer.advance(1, TimeUnit.SECONDS);
+
+            assertEquals(MAX_INTERVAL, scheduler.getInterval("quiet", TimeUnit.MILLISECONDS));
+            assertEquals(MIN_INTERVAL, scheduler.getInterval("noisy", TimeUnit.MILLISECONDS));
+            assertTrue(manager.numDataPoints("noisy") > manager.numDataPoints("quiet"));
+
+            assertTrue(scheduler.cancel("noisy"));
+            assertEquals(-1, scheduler.getInterval("noisy", TimeUnit.MILLISECONDS));
+
+            int probes = manager.numDataPoints("noisy");
+            timer.advance(1, TimeUnit.SECONDS);
+            assertEquals(probes, manager.numDataPoints("noisy"));
+        }
+    }
+
+    /**
+     * Scheduled executor on a virtual clock, which runs the due tasks on the calling thread when the clock is advanced.
+     * Only {@link #schedule(Runnable, long, TimeUnit)} is supported.
+     */
+    private static final class ManualTimer extends AbstractExecutorService implements ScheduledExecutorService {
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private long now; // nanoseconds
+        private long scheduled; // number of tasks scheduled so far, orders tasks due at the same time
+        private boolean shutdown;
+
+        long now() {
+            return this.now;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            long end = this.now + unit.toNanos(duration);
+            while (!this.tasks.isEmpty() && this.tasks.peek().time <= end) {
+                Task task = this.tasks.poll();
+                this.now = task.time;
+                task.run(); // no-op if cancelled
+            }
+            this.now = end;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Task task = new Task(command, this.now + unit.toNanos(delay), this.scheduled++);
+            this.tasks.add(task);
+            return task;
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+                                                      TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+                                                         TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            this.schedule(command, 0, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void shutdown() {
+            this.shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            this.shutdown = true;
+            this.tasks.clear();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return this.shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return this.shutdown;
+        }
+
+        private final class Task extends FutureTask<Void> implements ScheduledFuture<Void> {
+            private final long time;
+            private final long sequence;
+
+            Task(Runnable command, long time, long sequence) {
+                super(command, null);
+                this.time = time;
+                this.sequence = sequence;
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return unit.convert(this.time - ManualTimer.this.now, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public int compareTo(Delayed o) {
+                Task other = (Task) o;
+                if (this.time != other.time) return Long.compare(this.time, other.time);
+                return Long.compare(this.sequence, other.sequence);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.HullMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.algorithm.TinySyncAlgorithm;
+import com.github.molguin92.minisync.simulation.ClockModel;
+import com.github.molguin92.minisync.simulation.DelayModel;
+import com.github.molguin92.minisync.simulation.LinkModel;
+import com.github.molguin92.minisync.simulation.SimulatedPeer;
+import com.github.molguin92.minisync.simulation.Simulation;
+import com.github.molguin92.minisync.simulation.SimulationResult;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationTest {
+
+    private static final int NUM_PEERS = 500;
+    private static final int NUM_SAMPLES = 200;
+
+    // asymmetric link with a heavy-tailed forward delay and 5% loss
+    private static final LinkModel LINK = new LinkModel(
+            DelayModel.uniform(100, 150).plus(DelayModel.exponential(0, 200)),
+            DelayModel.uniform(300, 350),
+            0.05d, 100000);
+    private static final ClockModel CLOCK = new ClockModel(1.0d, 50e-6d, 0.0d, 0.0d, 1000.0d);
+
+    private static void assertSameAccuracy(SimulationResult expected, SimulationResult result) {
+        assertEquals(expected.samples, result.samples);
+        assertEquals(expected.lostSamples, result.lostSamples);
+        assertEquals(expected.checks, result.checks);
+        assertEquals(expected.boundViolations, result.boundViolations);
+        assertEquals(expected.meanError, result.meanError);
+        assertEquals(expected.maxError, result.maxError);
+        assertEquals(expected.meanBoundWidth, result.meanBoundWidth);
+        assertEquals(expected.meanDriftError, result.meanDriftError);
+    }
+
+    @Test
+    void deterministic() {
+        SimulatedPeer a = new Simulation(CLOCK, LINK, PrimitiveMiniSyncAlgorithm::new, 21).peer(7);
+        SimulatedPeer b = new Simulation(CLOCK, LINK, PrimitiveMiniSyncAlgorithm::new, 21).peer(7);
+        double[] sa = new double[3];
+        double[] sb = new double[3];
+        for (int i = 0; i < NUM_SAMPLES; ++i) {
+            assertEquals(a.probe(sa), b.probe(sb));
+            assertArrayEquals(sa, sb);
+        }
+
+        // peers run in parallel, but the results only depend on the seed
+        Simulation simulation = new Simulation(CLOCK, LINK, PrimitiveMiniSyncAlgorithm::new, 21);
+        assertSameAccuracy(simulation.run(NUM_PEERS, NUM_SAMPLES), simulation.run(NUM_PEERS, NUM_SAMPLES));
+    }
+
+    @Test
+    void constantDrift() {
+        SimulationResult result = new Simulation(CLOCK, LINK, PrimitiveMiniSyncAlgorithm::new, 21)
+                .run(NUM_PEERS, NUM_SAMPLES);
+
+        assertEquals(NUM_PEERS, result.peers);
+        assertEquals(0, result.failedPeers);
+        assertEquals((long) NUM_PEERS * NUM_SAMPLES, result.samples + result.lostSamples);
+        assertEquals(0.05d, (double) result.lostSamples / (NUM_PEERS * NUM_SAMPLES), 0.005d);
+        assertEquals(result.samples - NUM_PEERS, result.checks);
+        assertEquals(0, result.boundViolations);
+        assertTrue(result.meanError < result.meanBoundWidth / 2);
+        assertTrue(result.meanDriftError < 1e-6);
+        assertTrue(result.ingestNanos > 0);
+
+        // both implementations of the hull-based pruning produce the same estimates
+        assertSameAccuracy(result,
+                new Simulation(CLOCK, LINK, HullMiniSyncAlgorithm::new, 21).run(NUM_PEERS, NUM_SAMPLES));
+    }
+
+    @Test
+    void negativeRemoteTimes() throws TimeSyncAlgorithmException {
+        // constant drifts, but the remote clocks are 1000 s behind the local one, so all remote timestamps are negative
+        ClockModel clock = new ClockModel(1.0d, 50e-6d, 0.0d, 1e9, 1000.0d);
+        Simulation simulation = new Simulation(clock, LINK, PrimitiveMiniSyncAlgorithm::new, 21);
+
+        SimulatedPeer peer = simulation.peer(0);
+        PrimitiveMiniSyncAlgorithm algo = new PrimitiveMiniSyncAlgorithm();
+        double[] sample = new double[3];
+        for (int i = 0; i < NUM_SAMPLES; ++i) {
+            if (!peer.probe(sample)) continue;
+            assertTrue(sample[1] < 0);
+            algo.addDataPoint(sample[0], sample[1], sample[2]);
+        }
+        assertTrue(algo.getOffsetError() < 0);
+
+        SimulationResult result = simulation.run(NUM_PEERS, NUM_SAMPLES);
+        assertEquals(0, result.failedPeers);
+        assertTrue(result.boundViolations > 0);
+    }
+
+    @Test
+    void wanderingDrift() {
+        // drift changes by 10 ppm per probe (much faster than real oscillators)
+        ClockModel clock = new ClockModel(1.0d, 50e-6d, 1e-5d, 0.0d, 1000.0d);
+        SimulationResult result = new Simulation(clock, LINK, TinySyncAlgorithm::new, 21)
+                .run(NUM_PEERS, NUM_SAMPLES);
+
+        // the estimates assume a constant drift, so the bounds end up excluding the true time
+        assertTrue(result.boundViolations > 0);
+        assertTrue(result.violationRate() < 1);
+    }
+}
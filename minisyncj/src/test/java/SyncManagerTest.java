@@ -0,0 +1,163 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.manager.SyncManager;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyncManagerTest {
+
+    private static final int NUM_PEERS = 200;
+    private static final int NUM_SAMPLES = 100;
+    private static final int NUM_THREADS = 4;
+
+    // sample i for peer p
+    private static double To(int p, int i) {
+        return i * 1000.0d;
+    }
+
+    private static double Tb(int p, int i) {
+        return To(p, i) * (1.0d + p * 1e-6d) + p + 100 + (i * 31 % 17);
+    }
+
+    private static double Tr(int p, int i) {
+        return To(p, i) + 250 + (i * 7 % 13);
+    }
+
+    @Test
+    void unknownPeer() {
+        SyncManager<Integer> manager = new SyncManager<>();
+        assertThrows(IllegalArgumentException.class, () -> manager.getDrift(0));
+        assertFalse(manager.removePeer(0));
+    }
+
+    @Test
+    void concurrentIngestion() throws Exception {
+        SyncManager<Integer> manager = new SyncManager<>();
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            // every thread feeds samples to every peer, in order, interleaved with the other threads
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < NUM_THREADS; ++t) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int p = thread; p < NUM_PEERS; p += NUM_THREADS)
+                        for (int i = 0; i < NUM_SAMPLES; ++i)
+                            manager.addDataPoint(p, To(p, i), Tb(p, i), Tr(p, i));
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(NUM_PEERS, manager.numPeers());
+        for (int p = 0; p < NUM_PEERS; ++p) {
+            TimeSyncAlgorithm expected = new PrimitiveMiniSyncAlgorithm();
+            for (int i = 0; i < NUM_SAMPLES; ++i)
+                expected.addDataPoint(To(p, i), Tb(p, i), Tr(p, i));
+
+            assertEquals(NUM_SAMPLES, manager.numDataPoints(p));
+            assertEquals(expected.getDrift(), manager.getDrift(p));
+            assertEquals(expected.getDriftError(), manager.getDriftError(p));
+            assertEquals(expected.getOffset(), manager.getOffset(p));
+            assertEquals(expected.getOffsetError(), manager.getOffsetError(p));
+        }
+
+        assertTrue(manager.removePeer(0));
+        assertEquals(NUM_PEERS - 1, manager.numPeers());
+    }
+
+    @Test
+    void checkpointRestore() throws Exception {
+        SyncManager<Integer> manager = new SyncManager<>();
+        for (int p = 0; p < NUM_PEERS; ++p)
+            for (int i = 0; i < NUM_SAMPLES / 2; ++i)
+                manager.addDataPoint(p, To(p, i), Tb(p, i), Tr(p, i));
+
+        SyncManager.KeyCodec<Integer> codec = new SyncManager.KeyCodec<Integer>() {
+            @Override
+            public void write(Integer key, ByteBuffer buffer) {
+                buffer.putInt(key);
+            }
+
+            @Override
+            public Integer read(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+        };
+
+        Path file = Files.createTempFile("minisync", ".checkpoint");
+        try {
+            long written;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                written = manager.checkpoint(channel, codec);
+            }
+            assertEquals(Files.size(file), written);
+
+            SyncManager<Integer> restored = new SyncManager<>();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertEquals(NUM_PEERS, restored.restore(channel, codec));
+            }
+
+            // restored peers continue exactly where the original ones left off
+            for (int p = 0; p < NUM_PEERS; ++p) {
+                assertEquals(manager.getEstimate(p).offset, restored.getEstimate(p).offset);
+                for (int i = NUM_SAMPLES / 2; i < NUM_SAMPLES; ++i) {
+                    manager.addDataPoint(p, To(p, i), Tb(p, i), Tr(p, i));
+                    restored.addDataPoint(p, To(p, i), Tb(p, i), Tr(p, i));
+                }
+                assertEquals(manager.numDataPoints(p), restored.numDataPoints(p));
+                assertEquals(manager.getDrift(p), restored.getDrift(p));
+                assertEquals(manager.getDriftError(p), restored.getDriftError(p));
+                assertEquals(manager.getOffset(p), restored.getOffset(p));
+                assertEquals(manager.getOffsetError(p), restored.getOffsetError(p));
+            }
+
+            // cut right after the header, within the first key, within the first peer and within the last one
+            byte[] bytes = Files.readAllBytes(file);
+            for (int length : new int[]{9, 11, 100, bytes.length - 1}) {
+                Files.write(file, Arrays.copyOf(bytes, length));
+                SyncManager<Integer> truncated = new SyncManager<>();
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    assertThrows(IllegalArgumentException.class, () -> truncated.restore(channel, codec));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
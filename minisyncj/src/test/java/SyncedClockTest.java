@@ -0,0 +1,149 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.BoundedTime;
+import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.SyncedClock;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithmException;
+import com.github.molguin92.minisync.simulation.ClockModel;
+import com.github.molguin92.minisync.simulation.DelayModel;
+import com.github.molguin92.minisync.simulation.LinkModel;
+import com.github.molguin92.minisync.simulation.SimulatedPeer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyncedClockTest {
+
+    private static final LinkModel LINK = new LinkModel(DelayModel.uniform(100, 300), 10000);
+    private static final ClockModel CLOCK = new ClockModel(1.0001d, 5000);
+
+    @Test
+    void translation() throws TimeSyncAlgorithmException {
+        SimulatedPeer peer = new SimulatedPeer(CLOCK, LINK, 23);
+        MiniSyncAlgorithm algo = new MiniSyncAlgorithm();
+        AtomicLong local = new AtomicLong();
+        SyncedClock clock = new SyncedClock(algo, local::get);
+        double[] sample = new double[3];
+        double[] bounds = new double[2];
+
+        assertThrows(IllegalArgumentException.class, () -> clock.nowRemoteBounds(new double[1]));
+        for (int i = 0; i < 500; ++i) {
+            SyncEstimate previous = clock.getEstimate();
+            peer.probe(sample);
+            algo.addDataPoint(sample[0], sample[1], sample[2]);
+            local.set((long) sample[2] + 1234);
+
+            // the coefficients are only replaced when the estimate changes
+            SyncEstimate estimate = algo.getEstimate();
+            assertEquals(estimate == previous, clock.getEstimate() == previous);
+            assertSame(estimate, clock.getEstimate());
+
+            BoundedTime expected = estimate.toRemote(local.get());
+            double remote = clock.nowRemoteBounds(bounds);
+            assertEquals(expected.value, remote, 1e-9 * Math.abs(expected.value));
+            assertEquals(expected.value, clock.nowRemote(), 1e-9 * Math.abs(expected.value));
+            assertEquals(expected.min, bounds[0], 1e-9 * Math.abs(expected.min));
+            assertEquals(expected.max, bounds[1], 1e-9 * Math.abs(expected.max));
+            if (i > 0)
+                assertTrue(bounds[0] <= peer.toRemote(local.get()) && peer.toRemote(local.get()) <= bounds[1]);
+        }
+
+        // the default clock is System.nanoTime(), relative to its reading at creation
+        long before = System.nanoTime();
+        SyncedClock nano = new SyncedClock(algo);
+        double remote = nano.nowRemote();
+        long after = System.nanoTime();
+        assertTrue(before <= nano.getLocalOrigin() && nano.getLocalOrigin() <= after);
+        assertTrue(algo.getEstimate().toRemote(0).value <= remote);
+        assertTrue(remote <= algo.getEstimate().toRemote(after - nano.getLocalOrigin()).value);
+    }
+
+    @Test
+    void largeReadings() throws TimeSyncAlgorithmException {
+        // readings beyond 2^53 are not exact as doubles, so they have to be rebased to the origin before conversion
+        long origin = (1L << 62) + 1;
+        SimulatedPeer peer = new SimulatedPeer(CLOCK, LINK, 23);
+        MiniSyncAlgorithm algo = new MiniSyncAlgorithm();
+        AtomicLong local = new AtomicLong(origin);
+        SyncedClock clock = new SyncedClock(algo, local::get);
+        assertEquals(origin, clock.getLocalOrigin());
+
+        double[] sample = new double[3];
+        double[] bounds = new double[2];
+        for (int i = 0; i < 100; ++i) {
+            peer.probe(sample);
+            algo.addDataPoint(sample[0], sample[1], sample[2]);
+            long relative = (long) sample[2] + 1;
+            local.set(origin + relative);
+
+            BoundedTime expected = algo.getEstimate().toRemote(relative);
+            assertEquals(expected.value, clock.nowRemote(), 1e-12 * Math.abs(expected.value));
+            assertEquals(expected.value, clock.toRemoteBounds(origin + relative, bounds),
+                    1e-12 * Math.abs(expected.value));
+            if (i > 0) assertTrue(bounds[0] <= peer.toRemote(relative) && peer.toRemote(relative) <= bounds[1]);
+        }
+    }
+
+    @Test
+    void concurrentReaders() throws Exception {
+        SimulatedPeer peer = new SimulatedPeer(CLOCK, LINK, 23);
+        MiniSyncAlgorithm algo = new MiniSyncAlgorithm();
+        SyncedClock clock = new SyncedClock(algo);
+        AtomicLong latest = new AtomicLong(); // latest local time covered by the estimates
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicInteger violations = new AtomicInteger(0);
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 16; ++i) {
+            Thread reader = new Thread(() -> {
+                double[] bounds = new double[2];
+                while (!done.get()) {
+                    long local = latest.get();
+                    double remote = clock.toRemoteBounds(clock.getLocalOrigin() + local, bounds);
+                    double truth = peer.toRemote(local);
+                    if (local > 0 && !(bounds[0] <= truth && truth <= bounds[1] && bounds[0] <= remote &&
+                            remote <= bounds[1]))
+                        violations.incrementAndGet();
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        double[] sample = new double[3];
+        for (int i = 0; i < 2000; ++i) {
+            peer.probe(sample);
+            algo.addDataPoint(sample[0], sample[1], sample[2]);
+            if (i > 0) latest.set((long) sample[2]);
+        }
+        done.set(true);
+        for (Thread reader : readers) reader.join();
+
+        assertEquals(0, violations.get());
+        assertSame(algo.getEstimate(), clock.getEstimate());
+    }
+}
@@ -19,10 +19,18 @@
 
 import org.junit.jupiter.api.BeforeEach;
 import com.github.molguin92.minisync.algorithm.TinySyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
 
 class TinySyncAlgorithmTest extends BaseAlgorithmTest {
     @BeforeEach
     void setUp() {
         this.algo = new TinySyncAlgorithm();
     }
+
+    @Override
+    TimeSyncAlgorithm fullScan() {
+        TinySyncAlgorithm full_scan = new TinySyncAlgorithm();
+        full_scan.setIncrementalSelection(false);
+        return full_scan;
+    }
 }
\ No newline at end of file
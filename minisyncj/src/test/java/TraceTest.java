@@ -0,0 +1,129 @@
+/**********************************************************************************************************************
+ * Copyright (c) 2019 Manuel Olguín Muñoz <molguin@kth.se>                                                            *
+ *                                                                                                                    *
+ * This file is part of MiniSyncJ.                                                                                    *
+ *                                                                                                                    *
+ * Licensed under the Apache License, Version 2.0 (the "License");                                                    *
+ * you may not use this file except in compliance with the License.                                                   *
+ * You may obtain a copy of the License at                                                                            *
+ *                                                                                                                    *
+ *     http://www.apache.org/licenses/LICENSE-2.0                                                                     *
+ *                                                                                                                    *
+ * See also the LICENSE file at the root directory of this repository.                                                *
+ * Unless required by applicable law or agreed to in writing, software                                                *
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                  *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.                                           *
+ * See the License for the specific language governing permissions and                                                *
+ * limitations under the License.                                                                                     *
+ **********************************************************************************************************************/
+
+import com.github.molguin92.minisync.algorithm.HullMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.MiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.PrimitiveMiniSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.SyncEstimate;
+import com.github.molguin92.minisync.algorithm.TimeSyncAlgorithm;
+import com.github.molguin92.minisync.algorithm.TinySyncAlgorithm;
+import com.github.molguin92.minisync.filter.FeasibilityFilter;
+import com.github.molguin92.minisync.trace.RecordingTimeSyncAlgorithm;
+import com.github.molguin92.minisync.trace.ReplayResult;
+import com.github.molguin92.minisync.trace.TraceReader;
+import com.github.molguin92.minisync.trace.TraceReplay;
+import com.github.molguin92.minisync.trace.TraceWriter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceTest {
+
+    // more than one mapped region of the writer
+    private static final int NUM_SAMPLES = 100000;
+
+    private static void assertSameEstimate(SyncEstimate expected, SyncEstimate actual) {
+        assertEquals(expected.drift, actual.drift);
+        assertEquals(expected.driftError, actual.driftError);
+        assertEquals(expected.offset, actual.offset);
+        assertEquals(expected.offsetError, actual.offsetError);
+    }
+
+    @Test
+    void recordAndReplay() throws Exception {
+        Path file = Files.createTempFile("minisync", ".trace");
+        try {
+            TimeSyncAlgorithm tiny = new TinySyncAlgorithm();
+            TimeSyncAlgorithm hull = new HullMiniSyncAlgorithm();
+            Random r = new Random(0);
+            try (TraceWriter writer = new TraceWriter(file)) {
+                TimeSyncAlgorithm recorded = new RecordingTimeSyncAlgorithm(new PrimitiveMiniSyncAlgorithm(), writer);
+                for (int i = 0; i < NUM_SAMPLES; ++i) {
+                    double To = 1000.0d * i;
+                    double Tb = To * 1.00001 + 100 + r.nextInt(100);
+                    double Tr = To + 200 + r.nextInt(100);
+                    recorded.addDataPoint(To, Tb, Tr);
+                    tiny.addDataPoint(To, Tb, Tr);
+                    hull.addDataPoint(To, Tb, Tr);
+                }
+                assertEquals(NUM_SAMPLES, writer.getCount());
+            }
+
+            try (TraceReader reader = new TraceReader(file)) {
+                assertEquals(NUM_SAMPLES, reader.getCount());
+                double[] To = new double[3];
+                double[] Tb = new double[3];
+                double[] Tr = new double[3];
+                assertEquals(3, reader.read(To, Tb, Tr));
+                assertArrayEquals(new double[]{0, 1000, 2000}, To);
+            }
+
+            TimeSyncAlgorithm replayed_tiny = new TinySyncAlgorithm();
+            TimeSyncAlgorithm replayed_hull = new HullMiniSyncAlgorithm();
+            ReplayResult result = TraceReplay.replay(file, replayed_tiny, replayed_hull);
+            assertEquals(NUM_SAMPLES, result.records);
+            assertFalse(result.failed());
+            assertSameEstimate(tiny.getEstimate(), replayed_tiny.getEstimate());
+            assertSameEstimate(hull.getEstimate(), replayed_hull.getEstimate());
+            assertEquals(NUM_SAMPLES, replayed_hull.numDataPoints());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void replayFailure() throws Exception {
+        final int anomaly = 5000;
+        Path file = Files.createTempFile("minisync", ".trace");
+        try {
+            Random r = new Random(15);
+            try (TraceWriter writer = new TraceWriter(file)) {
+                for (int i = 0; i < 2 * anomaly; ++i) {
+                    double To = 1000.0d * i;
+                    double Tb = To + 100 + r.nextInt(100);
+                    double Tr = To + 300 + r.nextInt(100);
+                    // a reply received long before the request was sent implies a negative drift
+                    if (i == anomaly) writer.append(-1e7, Tb, -1e7 + 100);
+                    else writer.append(To, Tb, Tr);
+                }
+            }
+
+            TimeSyncAlgorithm plain = new MiniSyncAlgorithm();
+            TimeSyncAlgorithm filtered = new MiniSyncAlgorithm();
+            filtered.addFilter(new FeasibilityFilter());
+            ReplayResult result = TraceReplay.replay(file, plain, filtered);
+
+            // the failing algorithm is identified with the record which broke it, and the other one keeps going
+            assertEquals(2 * anomaly, result.records);
+            assertTrue(result.failed());
+            assertNotNull(result.getFailure(0));
+            assertEquals(anomaly, result.getFailedRecord(0));
+            assertNull(result.getFailure(1));
+            assertEquals(-1, result.getFailedRecord(1));
+            assertEquals(2 * anomaly - 1, filtered.numDataPoints());
+            assertTrue(result.toString().contains("failed at record " + anomaly));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}